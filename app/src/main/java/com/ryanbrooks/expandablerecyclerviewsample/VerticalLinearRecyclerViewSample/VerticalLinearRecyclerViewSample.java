@@ -72,6 +72,8 @@ public class VerticalLinearRecyclerViewSample extends AppCompatActivity implemen
         mRecyclerView.setAdapter(mExpandableAdapter);
         // Set the layout manager to a LinearLayout manager for vertical list
         mRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        // Toggled parents are rebound in place rather than cross-faded with a new ViewHolder
+        mRecyclerView.getItemAnimator().setSupportsChangeAnimations(false);
 
         // Set spinner adapter
         CustomSpinnerAdapter customSpinnerAdapter = new CustomSpinnerAdapter(this, mDurationList);
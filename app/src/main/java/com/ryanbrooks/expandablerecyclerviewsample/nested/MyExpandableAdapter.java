@@ -91,19 +91,9 @@ public class MyExpandableAdapter extends ExpandableRecyclerAdapter<CustomParentV
     public void setSingleParentExpanded(boolean singleParentExpanded) {
         this.mSingleParentExpanded = singleParentExpanded;
 
-        // we will collapse all top-level parents when this setting is enabled
-        //  (sub-parents will be collapsed automatically by parent class)
-        //
-        // NOTE: always walk backwards through items since indexes may change after collapsing an item
+        // we will collapse all parents in one pass when this setting is enabled
         if (singleParentExpanded) {
-            for (int i = mItemList.size() - 1; i >= 0; i--) {
-                if (mItemList.get(i) instanceof CustomParentObject) {
-                    CustomParentObject parent = (CustomParentObject) mItemList.get(i);
-                    if (parent.getDepth() == 1) {
-                        collapseParent(parent, i);
-                    }
-                }
-            }
+            collapseAllParents();
         }
     }
 
@@ -42,6 +42,8 @@ public class NestedRecyclerViewSample extends AppCompatActivity {
         mRecyclerView.setAdapter(mExpandableAdapter);
         // Set the layout manager to a LinearLayout manager for vertical list
         mRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        // Toggled parents are rebound in place rather than cross-faded with a new ViewHolder
+        mRecyclerView.getItemAnimator().setSupportsChangeAnimations(false);
 
         // Demonstrate ability to have a parent expanded on creation.
         mExpandableAdapter.expandFirstParent();
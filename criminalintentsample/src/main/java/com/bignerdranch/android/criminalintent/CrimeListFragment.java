@@ -24,6 +24,8 @@ public class CrimeListFragment extends Fragment {
 
         mCrimeRecyclerView = (RecyclerView) view.findViewById(R.id.crime_recycler_view);
         mCrimeRecyclerView.setLayoutManager(new LinearLayoutManager(getActivity()));
+        // Toggled parents are rebound in place rather than cross-faded with a new ViewHolder
+        mCrimeRecyclerView.getItemAnimator().setSupportsChangeAnimations(false);
 
         CrimeExpandableAdapter crimeExpandableAdapter = new CrimeExpandableAdapter(getActivity(), generateCrimes());
         crimeExpandableAdapter.setCustomParentAnimationViewId(R.id.parent_list_item_expand_arrow);
@@ -0,0 +1,160 @@
+package com.bignerdranch.expandablerecyclerview.Benchmark;
+
+import com.bignerdranch.expandablerecyclerview.Model.ExpandableItemList;
+import com.bignerdranch.expandablerecyclerview.Model.MaterializedItemList;
+import com.bignerdranch.expandablerecyclerview.Model.ParentObject;
+import com.bignerdranch.expandablerecyclerview.Model.StableIdObject;
+import com.bignerdranch.expandablerecyclerview.Model.VirtualItemList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds the trees and item lists measured by the benchmarks.
+ */
+public final class BenchmarkTree {
+
+    /**
+     * The shape of the tree below each top level parent.
+     */
+    public enum Shape {
+        /** 10 children per parent */
+        FLAT(10, 0),
+        /** 1000 children per parent */
+        WIDE(1000, 0),
+        /** 10 nested parents of 10 children each per parent */
+        NESTED(10, 10);
+
+        private final int mChildCount;
+        private final int mGrandchildCount;
+
+        Shape(int childCount, int grandchildCount) {
+            mChildCount = childCount;
+            mGrandchildCount = grandchildCount;
+        }
+
+        /**
+         * @return the number of rows of one fully expanded top level parent
+         */
+        public int getRowsPerParent() {
+            return 1 + mChildCount * (1 + mGrandchildCount);
+        }
+    }
+
+    /**
+     * The ExpandableItemList implementation to measure.
+     */
+    public enum Engine {
+        MATERIALIZED,
+        VIRTUAL
+    }
+
+    private static final int  POSITION_COUNT = 1024;
+    private static final long SEED           = 42;
+
+    private BenchmarkTree() { }
+
+    /**
+     * Creates enough top level parents for about {@code rowCount} rows when fully expanded.
+     *
+     * @param shape
+     * @param rowCount
+     * @return the top level parents
+     */
+    public static List<ParentObject> createParents(Shape shape, int rowCount) {
+        int parentCount = Math.max(1, rowCount / shape.getRowsPerParent());
+        List<ParentObject> parents = new ArrayList<>(parentCount);
+        long nextId = 0;
+        for (int i = 0; i < parentCount; i++) {
+            Parent parent = new Parent(nextId++);
+            List<Object> children = new ArrayList<>(shape.mChildCount);
+            for (int j = 0; j < shape.mChildCount; j++) {
+                if (shape.mGrandchildCount == 0) {
+                    children.add(new Child(nextId++));
+                    continue;
+                }
+                Parent nestedParent = new Parent(nextId++);
+                List<Object> grandchildren = new ArrayList<>(shape.mGrandchildCount);
+                for (int k = 0; k < shape.mGrandchildCount; k++) {
+                    grandchildren.add(new Child(nextId++));
+                }
+                nestedParent.setChildObjectList(grandchildren);
+                children.add(nestedParent);
+            }
+            parent.setChildObjectList(children);
+            parents.add(parent);
+        }
+        return parents;
+    }
+
+    /**
+     * @param engine
+     * @param parents
+     * @return a collapsed item list for the parents
+     */
+    public static ExpandableItemList createItemList(Engine engine, List<ParentObject> parents) {
+        return engine == Engine.VIRTUAL
+                ? new VirtualItemList(parents)
+                : new MaterializedItemList(parents);
+    }
+
+    /**
+     * @param size
+     * @return {@link #getPositionMask()} + 1 random positions in [0, size), the same every run
+     */
+    public static int[] createPositions(int size) {
+        Random random = new Random(SEED);
+        int[] positions = new int[POSITION_COUNT];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = random.nextInt(size);
+        }
+        return positions;
+    }
+
+    /**
+     * @return the mask that wraps an index into the array returned by {@link #createPositions(int)}
+     */
+    public static int getPositionMask() {
+        return POSITION_COUNT - 1;
+    }
+
+    static final class Parent implements ParentObject, StableIdObject {
+
+        private final long mStableId;
+        private List<?>    mChildObjectList;
+
+        Parent(long stableId) {
+            mStableId = stableId;
+        }
+
+        @Override
+        public List<?> getChildObjectList() {
+            return mChildObjectList;
+        }
+
+        @Override
+        public void setChildObjectList(List<?> childObjectList) {
+            mChildObjectList = childObjectList;
+        }
+
+        @Override
+        public long getStableId() {
+            return mStableId;
+        }
+    }
+
+    static final class Child implements StableIdObject {
+
+        private final long mStableId;
+
+        Child(long stableId) {
+            mStableId = stableId;
+        }
+
+        @Override
+        public long getStableId() {
+            return mStableId;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.bignerdranch.expandablerecyclerview.Benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Expanding and collapsing the middle top level parent, alone and with its nested parents, and
+ * expanding and collapsing every parent at once.
+ * <p/>
+ * Each benchmark pairs an operation with its inverse so the tree is back in its initial state
+ * after every call; invocation level fixtures would swamp the sub-microsecond timings of small
+ * trees.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ExpansionBenchmark {
+
+    /**
+     * A collapsed tree; expansions are undone by the benchmark itself.
+     */
+    @State(Scope.Thread)
+    public static class CollapsedTree extends TreeState {
+
+        public int middlePosition;
+
+        @Setup
+        public void setUp() {
+            createTree();
+            middlePosition = parents.size() / 2;
+        }
+    }
+
+    /**
+     * Expands the middle parent and collapses it again.
+     */
+    @Benchmark
+    public int toggleParent(CollapsedTree tree) {
+        int insertedCount = tree.itemList.expandParent(tree.middlePosition);
+        return insertedCount + tree.itemList.collapseParent(tree.middlePosition);
+    }
+
+    /**
+     * Expands the middle parent and every parent below it, then collapses the whole subtree
+     * with a single collapse of the middle parent.
+     */
+    @Benchmark
+    public int toggleNestedParent(CollapsedTree tree) {
+        int position = tree.middlePosition;
+        int endPosition = position + 1 + tree.itemList.expandParent(position);
+        for (int i = position + 1; i < endPosition; i++) {
+            if (tree.itemList.isParent(i)) {
+                endPosition += tree.itemList.expandParent(i);
+            }
+        }
+        return tree.itemList.collapseParent(position);
+    }
+
+    /**
+     * Expands every parent and collapses them all again.
+     */
+    @Benchmark
+    public int toggleAllParents(CollapsedTree tree) {
+        int insertedCount = tree.itemList.expandAllParents();
+        return insertedCount + tree.itemList.collapseAllParents();
+    }
+}
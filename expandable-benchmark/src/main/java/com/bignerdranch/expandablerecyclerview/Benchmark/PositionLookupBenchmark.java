@@ -0,0 +1,57 @@
+package com.bignerdranch.expandablerecyclerview.Benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per row lookups made while scrolling a fully expanded tree: the item, its view type (what
+ * getItemViewType dispatches on) and the parent ordinal passed to the ExpandCollapseListener.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PositionLookupBenchmark extends TreeState {
+
+    private int[] mPositions;
+    private int   mNext;
+
+    @Setup
+    public void setUp() {
+        createTree();
+        itemList.expandAllParents();
+        mPositions = BenchmarkTree.createPositions(itemList.size());
+    }
+
+    @Benchmark
+    public Object get() {
+        return itemList.get(nextPosition());
+    }
+
+    @Benchmark
+    public int getViewType() {
+        return itemList.getViewType(nextPosition());
+    }
+
+    @Benchmark
+    public int getParentRowCountBefore() {
+        return itemList.getParentRowCountBefore(nextPosition());
+    }
+
+    private int nextPosition() {
+        mNext = (mNext + 1) & BenchmarkTree.getPositionMask();
+        return mPositions[mNext];
+    }
+}
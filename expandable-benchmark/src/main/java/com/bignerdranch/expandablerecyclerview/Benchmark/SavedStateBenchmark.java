@@ -0,0 +1,94 @@
+package com.bignerdranch.expandablerecyclerview.Benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saving the expanded states of a tree where every other top level parent is expanded, as
+ * stable ids and as parent bits, and restoring them into a collapsed tree.
+ * <p/>
+ * Restores are measured together with the collapse that undoes them, so the tree is collapsed
+ * again after every call without an invocation level fixture.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SavedStateBenchmark {
+
+    /**
+     * A tree with every other top level parent expanded.
+     */
+    @State(Scope.Thread)
+    public static class ExpandedTree extends TreeState {
+
+        public long[] expandedStableIds;
+        public long[] expandedParentBits;
+
+        @Setup
+        public void setUp() {
+            createTree();
+            expandEveryOtherParent(this);
+            expandedStableIds = itemList.getExpandedStableIds();
+            expandedParentBits = itemList.getExpandedParentBits();
+        }
+    }
+
+    /**
+     * The same tree, collapsed after its expanded states were saved.
+     */
+    @State(Scope.Thread)
+    public static class CollapsedTree extends TreeState {
+
+        public long[] expandedStableIds;
+        public long[] expandedParentBits;
+
+        @Setup
+        public void setUp() {
+            createTree();
+            expandEveryOtherParent(this);
+            expandedStableIds = itemList.getExpandedStableIds();
+            expandedParentBits = itemList.getExpandedParentBits();
+            itemList.collapseAllParents();
+        }
+    }
+
+    private static void expandEveryOtherParent(TreeState tree) {
+        for (int i = tree.parents.size() - 1; i >= 0; i -= 2) {
+            tree.itemList.expandParent(i);
+        }
+    }
+
+    @Benchmark
+    public long[] saveStableIds(ExpandedTree tree) {
+        return tree.itemList.getExpandedStableIds();
+    }
+
+    @Benchmark
+    public long[] saveParentBits(ExpandedTree tree) {
+        return tree.itemList.getExpandedParentBits();
+    }
+
+    @Benchmark
+    public int restoreStableIds(CollapsedTree tree) {
+        int insertedCount = tree.itemList.expandStableIds(tree.expandedStableIds);
+        return insertedCount + tree.itemList.collapseAllParents();
+    }
+
+    @Benchmark
+    public int restoreParentBits(CollapsedTree tree) {
+        int insertedCount = tree.itemList.expandParentBits(tree.expandedParentBits);
+        return insertedCount + tree.itemList.collapseAllParents();
+    }
+}
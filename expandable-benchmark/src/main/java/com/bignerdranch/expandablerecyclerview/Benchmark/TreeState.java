@@ -0,0 +1,34 @@
+package com.bignerdranch.expandablerecyclerview.Benchmark;
+
+import com.bignerdranch.expandablerecyclerview.Model.ExpandableItemList;
+import com.bignerdranch.expandablerecyclerview.Model.ParentObject;
+
+import org.openjdk.jmh.annotations.Param;
+
+import java.util.List;
+
+/**
+ * Base benchmark state: a tree of the given shape and size in the given engine.
+ */
+public abstract class TreeState {
+
+    @Param({"100", "10000", "1000000"})
+    public int rowCount;
+
+    @Param({"FLAT", "WIDE", "NESTED"})
+    public BenchmarkTree.Shape shape;
+
+    @Param({"MATERIALIZED", "VIRTUAL"})
+    public BenchmarkTree.Engine engine;
+
+    public List<ParentObject>  parents;
+    public ExpandableItemList itemList;
+
+    /**
+     * Creates a collapsed item list for a new tree.
+     */
+    protected void createTree() {
+        parents = BenchmarkTree.createParents(shape, rowCount);
+        itemList = BenchmarkTree.createItemList(engine, parents);
+    }
+}
@@ -0,0 +1,228 @@
+package com.bignerdranch.expandablerecyclerview.Model;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded cache of the child lists of collapsed ParentObjects whose children are loaded by a
+ * {@link ChildListLoader}.
+ * <p/>
+ * When such a parent is collapsed, the adapter detaches its child list and stores it here. When
+ * it is expanded again, the list is taken back without calling the loader. Only collapsed
+ * parents are ever held, so eviction never affects visible rows. Once the entry count or total
+ * weight exceeds its limit, the least recently collapsed parents are evicted and their children
+ * are loaded again on their next expansion.
+ * <p/>
+ * Parents are matched by identity rather than equals, so a parent whose hashCode depends on its
+ * child list is still found after the list was detached.
+ */
+public class ChildListCache {
+
+    /**
+     * Computes the weight of a cached child list.
+     */
+    public interface Weigher {
+
+        /**
+         * @param parentObject
+         * @param childObjectList
+         * @return the weight of the list, at least 0
+         */
+        int getWeight(ParentObject parentObject, List<?> childObjectList);
+    }
+
+    private static final Weigher CHILD_COUNT_WEIGHER = new Weigher() {
+        @Override
+        public int getWeight(ParentObject parentObject, List<?> childObjectList) {
+            return childObjectList.size();
+        }
+    };
+
+    private final Map<Key, Entry> mEntries = new LinkedHashMap<>();
+    private final int             mMaxEntryCount;
+    private final int             mMaxWeight;
+    private Weigher               mWeigher = CHILD_COUNT_WEIGHER;
+    private int                   mWeight;
+
+    private int mHitCount;
+    private int mMissCount;
+    private int mEvictionCount;
+
+    /**
+     * Creates a cache whose lists are weighed by their number of children.
+     *
+     * @param maxEntryCount the maximum number of cached lists
+     * @param maxWeight     the maximum total weight of the cached lists
+     */
+    public ChildListCache(int maxEntryCount, int maxWeight) {
+        if (maxEntryCount < 0 || maxWeight < 0) {
+            throw new IllegalArgumentException("Limits must not be negative");
+        }
+        mMaxEntryCount = maxEntryCount;
+        mMaxWeight = maxWeight;
+    }
+
+    /**
+     * Sets how cached lists are weighed. Only lists stored afterwards are affected.
+     *
+     * @param weigher
+     */
+    public void setWeigher(Weigher weigher) {
+        mWeigher = weigher;
+    }
+
+    /**
+     * Stores the child list of a parent that was collapsed, evicting the least recently stored
+     * lists if a limit is exceeded.
+     *
+     * @param parentObject
+     * @param childObjectList
+     */
+    public void put(ParentObject parentObject, List<?> childObjectList) {
+        remove(parentObject);
+        Entry entry = new Entry(parentObject, childObjectList,
+                                mWeigher.getWeight(parentObject, childObjectList));
+        mEntries.put(new Key(parentObject), entry);
+        mWeight += entry.mWeight;
+        trim();
+    }
+
+    /**
+     * Removes and returns the cached child list of a parent that is being expanded, counting a
+     * hit or a miss.
+     *
+     * @param parentObject
+     * @return the cached list, or null if it is not cached
+     */
+    public List<?> take(ParentObject parentObject) {
+        List<?> childObjectList = remove(parentObject);
+        if (childObjectList != null) {
+            mHitCount++;
+        } else {
+            mMissCount++;
+        }
+        return childObjectList;
+    }
+
+    /**
+     * Gives every cached list back to its parent and empties the cache, without counting hits.
+     *
+     * @return the parents whose lists were given back, least recently stored first
+     */
+    public List<ParentObject> restoreAll() {
+        List<ParentObject> parentObjects = new ArrayList<>(mEntries.size());
+        for (Entry entry : mEntries.values()) {
+            entry.mParentObject.setChildObjectList(entry.mChildObjectList);
+            parentObjects.add(entry.mParentObject);
+        }
+        clear();
+        return parentObjects;
+    }
+
+    /**
+     * Drops every cached list.
+     */
+    public void clear() {
+        mEntries.clear();
+        mWeight = 0;
+    }
+
+    /**
+     * @return the number of cached lists
+     */
+    public int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * @return the total weight of the cached lists
+     */
+    public int getWeight() {
+        return mWeight;
+    }
+
+    /**
+     * @return the number of expansions that found their children in the cache
+     */
+    public int getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * @return the number of expansions that did not find their children in the cache
+     */
+    public int getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * @return the number of lists evicted to stay within the limits
+     */
+    public int getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    /**
+     * Removes the cached child list of a parent that was removed from the adapter, without
+     * counting a hit or a miss.
+     *
+     * @param parentObject
+     * @return the cached list, or null if it is not cached
+     */
+    public List<?> remove(ParentObject parentObject) {
+        Entry entry = mEntries.remove(new Key(parentObject));
+        if (entry == null) {
+            return null;
+        }
+        mWeight -= entry.mWeight;
+        return entry.mChildObjectList;
+    }
+
+    private void trim() {
+        Iterator<Entry> iterator = mEntries.values().iterator();
+        while ((mEntries.size() > mMaxEntryCount || mWeight > mMaxWeight) && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            mWeight -= eldest.mWeight;
+            mEvictionCount++;
+        }
+    }
+
+    /**
+     * Map key comparing ParentObjects by identity.
+     */
+    private static final class Key {
+
+        private final ParentObject mParentObject;
+
+        Key(ParentObject parentObject) {
+            mParentObject = parentObject;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).mParentObject == mParentObject;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(mParentObject);
+        }
+    }
+
+    private static final class Entry {
+
+        final ParentObject mParentObject;
+        final List<?>      mChildObjectList;
+        final int          mWeight;
+
+        Entry(ParentObject parentObject, List<?> childObjectList, int weight) {
+            mParentObject = parentObject;
+            mChildObjectList = childObjectList;
+            mWeight = weight;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.bignerdranch.expandablerecyclerview.Model;
+
+import java.util.List;
+
+/**
+ * Loads the children of ParentObjects whose child list is not available yet.
+ * <p/>
+ * When a ParentObject whose getChildObjectList() returns null is expanded by a click, the
+ * adapter shows {@link #getPlaceholderCount(ParentObject)} {@link ChildPlaceholder} rows below it
+ * immediately and calls {@link #loadChildObjectList(ParentObject)} on a background executor.
+ * The loaded list is stored with setChildObjectList and swapped in for the placeholders. If the
+ * parent is collapsed before the load completes, the result is dropped.
+ */
+public interface ChildListLoader {
+
+    /**
+     * Called on the main thread when the parent is expanded.
+     *
+     * @param parentObject
+     * @return the number of placeholder rows to show while the children are loading
+     */
+    int getPlaceholderCount(ParentObject parentObject);
+
+    /**
+     * Called on a background thread. Must not touch the adapter.
+     *
+     * @param parentObject
+     * @return the parent's children, or null if it has none
+     */
+    List<?> loadChildObjectList(ParentObject parentObject);
+}
@@ -0,0 +1,48 @@
+package com.bignerdranch.expandablerecyclerview.Model;
+
+/**
+ * Child row shown in place of a child that is still being loaded by a {@link ChildListLoader}.
+ * It is bound through onBindChildViewHolder like any other child.
+ * <p/>
+ * Its stable id is derived from its parent's stable id, or the parent's identity if the parent
+ * has none, and its index, so placeholders can be shown by adapters with stable ids.
+ */
+public final class ChildPlaceholder implements StableIdObject {
+
+    private final ParentObject mParentObject;
+    private final int          mIndex;
+
+    public ChildPlaceholder(ParentObject parentObject, int index) {
+        mParentObject = parentObject;
+        mIndex = index;
+    }
+
+    /**
+     * @return the ParentObject whose children are loading
+     */
+    public ParentObject getParentObject() {
+        return mParentObject;
+    }
+
+    /**
+     * @return the index of this placeholder among its parent's placeholders
+     */
+    public int getIndex() {
+        return mIndex;
+    }
+
+    /**
+     * @return a hash of the parent's id and this placeholder's index, spread over all 64 bits so
+     * it is unlikely to collide with the ids of real rows
+     */
+    @Override
+    public long getStableId() {
+        long parentId = mParentObject instanceof StableIdObject
+                ? ((StableIdObject) mParentObject).getStableId()
+                : System.identityHashCode(mParentObject);
+        long id = parentId * 31 + mIndex + 0x9e3779b97f4a7c15L;
+        id = (id ^ (id >>> 30)) * 0xbf58476d1ce4e5b9L;
+        id = (id ^ (id >>> 27)) * 0x94d049bb133111ebL;
+        return id ^ (id >>> 31);
+    }
+}
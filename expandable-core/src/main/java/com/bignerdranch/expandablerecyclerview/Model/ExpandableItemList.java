@@ -0,0 +1,388 @@
+package com.bignerdranch.expandablerecyclerview.Model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The flattened list of visible rows backing an ExpandableRecyclerAdapter.
+ * <p/>
+ * The list is read only through the {@link java.util.List} interface; rows are only added and
+ * removed by expanding and collapsing parents. {@link MaterializedItemList} stores every visible
+ * row and supports any depth of nesting. {@link VirtualItemList} only stores the parents and
+ * resolves child rows on demand, for very large two level trees.
+ */
+public abstract class ExpandableItemList extends AbstractList<Object> {
+
+    public static final int TYPE_PARENT = 0;
+    public static final int TYPE_CHILD  = 1;
+
+    /**
+     * Decides which parents are expanded by a bulk expansion.
+     */
+    public interface ExpansionFilter {
+
+        /**
+         * @param parentObject  a collapsed ParentObject that is visible
+         * @param parentOrdinal the index of the parent among all parent rows of the resulting
+         *                      list, in list order
+         * @return true if the parent should be expanded
+         */
+        boolean shouldExpand(Object parentObject, int parentOrdinal);
+    }
+
+    private static final ExpansionFilter EXPAND_ALL = new ExpansionFilter() {
+        @Override
+        public boolean shouldExpand(Object parentObject, int parentOrdinal) {
+            return true;
+        }
+    };
+
+    /**
+     * @param position
+     * @return {@link #TYPE_PARENT} or {@link #TYPE_CHILD} for the row at the specified position
+     */
+    public abstract int getViewType(int position);
+
+    /**
+     * @param position
+     * @return true if the row at the specified position is a ParentObject
+     */
+    public boolean isParent(int position) {
+        return getViewType(position) == TYPE_PARENT;
+    }
+
+    /**
+     * @param position
+     * @return true if the row at the specified position is an expanded ParentObject
+     */
+    public abstract boolean isExpanded(int position);
+
+    /**
+     * @param position
+     * @return the nesting depth of the row at the specified position, 0 for top level parents
+     */
+    public abstract int getDepth(int position);
+
+    /**
+     * Expands the collapsed parent at the specified position, inserting its children below it.
+     *
+     * @param position
+     * @return the number of rows inserted after the parent
+     */
+    public abstract int expandParent(int position);
+
+    /**
+     * Expands the collapsed parent at the specified position, inserting only its first
+     * {@code maxChildCount} children below it. The rest can be inserted later with
+     * {@link #showMoreChildren(int, int, int)}.
+     *
+     * @param position
+     * @param maxChildCount
+     * @return the number of rows inserted after the parent
+     */
+    public abstract int expandParent(int position, int maxChildCount);
+
+    /**
+     * Inserts up to {@code maxChildCount} more children of the partially expanded parent at the
+     * specified position, after its visible subtree.
+     *
+     * @param position
+     * @param fromChildIndex the index of the first child not inserted yet
+     * @param maxChildCount
+     * @return the number of rows inserted
+     */
+    public abstract int showMoreChildren(int position, int fromChildIndex, int maxChildCount);
+
+    /**
+     * Collapses the expanded parent at the specified position along with every expanded parent
+     * in its visible subtree, removing the subtree's rows as one range.
+     *
+     * @param position
+     * @return the number of rows removed after the parent
+     */
+    public abstract int collapseParent(int position);
+
+    /**
+     * @param parentIndex
+     * @return the flat position of the top level parent at {@code parentIndex}
+     */
+    public abstract int getParentPosition(int parentIndex);
+
+    /**
+     * Returns the flat position of a child of an expanded top level parent. Children before it
+     * that are expanded parents themselves are skipped along with their visible subtrees.
+     *
+     * @param parentIndex
+     * @param childIndex
+     * @return the flat position of the child, or -1 if the parent is collapsed
+     */
+    public abstract int getChildPosition(int parentIndex, int childIndex);
+
+    /**
+     * Inserts a collapsed row for a top level parent that was inserted into the parent list at
+     * {@code parentIndex}.
+     *
+     * @param parentIndex
+     * @param parentObject
+     * @return the flat position of the inserted row
+     */
+    public abstract int insertParent(int parentIndex, ParentObject parentObject);
+
+    /**
+     * Removes the rows of the top level parent that was at {@code parentIndex}, including its
+     * visible children. {@link #getParentPosition(int)} gives their start beforehand.
+     *
+     * @param parentIndex
+     * @return the number of rows removed
+     */
+    public abstract int removeParent(int parentIndex);
+
+    /**
+     * Replaces the row of the top level parent at {@code parentIndex}. If the parent only
+     * changed, its expanded state and visible children are kept. If it was replaced by a
+     * different object, the old row's visible subtree is removed and the new row is collapsed.
+     *
+     * @param parentIndex
+     * @param parentObject
+     * @return the number of rows removed after the parent
+     */
+    public abstract int changeParent(int parentIndex, ParentObject parentObject);
+
+    /**
+     * Inserts a row for the child that was inserted at {@code childIndex} in the child list of
+     * the top level parent at {@code parentIndex}, if that parent is expanded.
+     *
+     * @param parentIndex
+     * @param childIndex
+     * @return the flat position of the inserted row, or -1 if the parent is collapsed
+     */
+    public abstract int insertChild(int parentIndex, int childIndex);
+
+    /**
+     * Removes the row, and any visible subtree, of the child that was at {@code childIndex} in
+     * the child list of the top level parent at {@code parentIndex}, if that parent is expanded.
+     * {@link #getChildPosition(int, int)} gives their start beforehand.
+     *
+     * @param parentIndex
+     * @param childIndex
+     * @return the number of rows removed
+     */
+    public abstract int removeChild(int parentIndex, int childIndex);
+
+    /**
+     * Replaces the row of the child at {@code childIndex} in the child list of the top level
+     * parent at {@code parentIndex} with the item now at that index, if that parent is expanded.
+     * If the child was replaced by a different object, the old row's visible subtree is removed
+     * and the new row is collapsed.
+     *
+     * @param parentIndex
+     * @param childIndex
+     * @return the number of rows removed after the child
+     */
+    public abstract int changeChild(int parentIndex, int childIndex);
+
+    /**
+     * Expands every collapsed parent, including parents nested in newly visible children, in a
+     * single pass over the list.
+     *
+     * @return the number of rows inserted
+     */
+    public int expandAllParents() {
+        return expandMatching(EXPAND_ALL);
+    }
+
+    /**
+     * Expands the given parents in a single pass over the list. A nested parent is only expanded
+     * if it is visible once its ancestors in the collection have been expanded.
+     *
+     * @param parentObjects
+     * @return the number of rows inserted
+     */
+    public int expandParents(Collection<?> parentObjects) {
+        final Set<Object> parentObjectSet = new HashSet<Object>(parentObjects);
+        return expandMatching(new ExpansionFilter() {
+            @Override
+            public boolean shouldExpand(Object parentObject, int parentOrdinal) {
+                return parentObjectSet.contains(parentObject);
+            }
+        });
+    }
+
+    /**
+     * Expands the parents that represent the same rows as the given parents, in a single pass
+     * over the list. Parents are matched as in {@link ItemListDiff#isSameItem(Object, Object)}:
+     * by stable id if they implement {@link StableIdObject} and by equals otherwise.
+     *
+     * @param parentObjects
+     * @return the number of rows inserted
+     */
+    public int expandSameParents(Collection<?> parentObjects) {
+        final Set<Long> stableIds = new HashSet<>();
+        final Set<Object> otherParentObjects = new HashSet<>();
+        for (Object parentObject : parentObjects) {
+            if (parentObject instanceof StableIdObject) {
+                stableIds.add(((StableIdObject) parentObject).getStableId());
+            } else {
+                otherParentObjects.add(parentObject);
+            }
+        }
+        return expandMatching(new ExpansionFilter() {
+            @Override
+            public boolean shouldExpand(Object parentObject, int parentOrdinal) {
+                if (parentObject instanceof StableIdObject) {
+                    return stableIds.contains(((StableIdObject) parentObject).getStableId());
+                }
+                return otherParentObjects.contains(parentObject);
+            }
+        });
+    }
+
+    /**
+     * @return the expanded parents, in list order
+     */
+    public List<Object> getExpandedParents() {
+        List<Object> expandedParents = new ArrayList<>();
+        for (int i = 0; i < size(); i++) {
+            if (isExpanded(i)) {
+                expandedParents.add(get(i));
+            }
+        }
+        return expandedParents;
+    }
+
+    /**
+     * Returns the stable ids of all expanded parents, if every expanded parent implements
+     * {@link StableIdObject}.
+     *
+     * @return the stable ids in list order, or null if an expanded parent has no stable id
+     */
+    public long[] getExpandedStableIds() {
+        int size = size();
+        int expandedCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (isExpanded(i)) {
+                if (!(get(i) instanceof StableIdObject)) {
+                    return null;
+                }
+                expandedCount++;
+            }
+        }
+        long[] stableIds = new long[expandedCount];
+        int stableIdCount = 0;
+        for (int i = 0; i < size && stableIdCount < expandedCount; i++) {
+            if (isExpanded(i)) {
+                stableIds[stableIdCount++] = ((StableIdObject) get(i)).getStableId();
+            }
+        }
+        return stableIds;
+    }
+
+    /**
+     * Returns the expanded state of every parent row packed into a bit set, indexed by the
+     * parent's ordinal among all parent rows in list order.
+     *
+     * @return the packed expanded flags, one bit per parent row
+     */
+    public long[] getExpandedParentBits() {
+        long[] bits = new long[(size() >>> 6) + 1];
+        int parentOrdinal = 0;
+        for (int i = 0; i < size(); i++) {
+            if (isParent(i)) {
+                if (isExpanded(i)) {
+                    bits[parentOrdinal >>> 6] |= 1L << parentOrdinal;
+                }
+                parentOrdinal++;
+            }
+        }
+        return Arrays.copyOf(bits, (parentOrdinal + 63) >>> 6);
+    }
+
+    /**
+     * Expands every parent whose stable id is in {@code stableIds} in a single pass over the
+     * list. Parents are matched by id, so this survives reordering of the parents.
+     *
+     * @param stableIds
+     * @return the number of rows inserted
+     */
+    public int expandStableIds(long[] stableIds) {
+        final long[] sortedStableIds = stableIds.clone();
+        Arrays.sort(sortedStableIds);
+        return expandMatching(new ExpansionFilter() {
+            @Override
+            public boolean shouldExpand(Object parentObject, int parentOrdinal) {
+                return parentObject instanceof StableIdObject
+                        && Arrays.binarySearch(sortedStableIds,
+                                               ((StableIdObject) parentObject).getStableId()) >= 0;
+            }
+        });
+    }
+
+    /**
+     * Expands every parent whose bit is set in a bit set returned by
+     * {@link #getExpandedParentBits()}, in a single pass over the list.
+     *
+     * @param expandedParentBits
+     * @return the number of rows inserted
+     */
+    public int expandParentBits(final long[] expandedParentBits) {
+        return expandMatching(new ExpansionFilter() {
+            @Override
+            public boolean shouldExpand(Object parentObject, int parentOrdinal) {
+                int word = parentOrdinal >>> 6;
+                return word < expandedParentBits.length
+                        && (expandedParentBits[word] & (1L << parentOrdinal)) != 0;
+            }
+        });
+    }
+
+    /**
+     * Collapses every parent in a single pass over the list.
+     *
+     * @return the number of rows removed
+     */
+    public abstract int collapseAllParents();
+
+    /**
+     * Expands every collapsed parent that is, or becomes, visible and is accepted by the filter,
+     * rebuilding the list in a single pass.
+     *
+     * @param expansionFilter
+     * @return the number of rows inserted
+     */
+    public abstract int expandMatching(ExpansionFilter expansionFilter);
+
+    /**
+     * Returns the position just past the last visible row nested below the row at the specified
+     * position.
+     *
+     * @param position
+     * @return the exclusive end position of the row's visible subtree
+     */
+    public abstract int getSubtreeEnd(int position);
+
+    /**
+     * Returns the number of ParentObject rows before the specified position.
+     *
+     * @param position
+     * @return number of parent rows before the specified position
+     */
+    public abstract int getParentRowCountBefore(int position);
+
+    /**
+     * @return a count that changes whenever rows are added or removed
+     */
+    public int getModificationCount() {
+        return modCount;
+    }
+
+    protected void checkPosition(int position) {
+        if (position < 0 || position >= size()) {
+            throw new IndexOutOfBoundsException("Position: " + position + ", Size: " + size());
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.bignerdranch.expandablerecyclerview.Model;
+
+/**
+ * Fenwick (binary indexed) tree over one weight per top level ParentObject.
+ * <p/>
+ * When the weight of each parent is the number of rows it currently occupies in the
+ * RecyclerView (itself plus its visible children), the prefix sum of a parent is its flat
+ * position and the parent owning a flat position can be found with a single descent of the
+ * tree. Both conversions, and updating a weight on expand or collapse, are O(log n).
+ */
+public class FlatPositionIndex {
+
+    private int[] mTree;
+    private int   mSize;
+
+    /**
+     * Creates an index with {@code size} entries, each with the given initial weight.
+     *
+     * @param size
+     * @param initialWeight
+     */
+    public FlatPositionIndex(int size, int initialWeight) {
+        reset(size, initialWeight);
+    }
+
+    /**
+     * Resets the index to {@code size} entries, each with the given weight. Runs in O(n).
+     *
+     * @param size
+     * @param weight
+     */
+    public void reset(int size, int weight) {
+        mSize = size;
+        mTree = new int[size + 1];
+        for (int i = 1; i <= size; i++) {
+            mTree[i] = weight;
+        }
+        build();
+    }
+
+    /**
+     * Resets the index to one entry per element of {@code weights}. Runs in O(n).
+     *
+     * @param weights
+     */
+    public void reset(int[] weights) {
+        mSize = weights.length;
+        mTree = new int[mSize + 1];
+        System.arraycopy(weights, 0, mTree, 1, mSize);
+        build();
+    }
+
+    /**
+     * Inserts a new entry with the given weight at {@code index}, shifting the entries after it.
+     * Runs in O(n).
+     *
+     * @param index
+     * @param weight
+     */
+    public void insert(int index, int weight) {
+        int[] weights = getWeights();
+        int[] newWeights = new int[mSize + 1];
+        System.arraycopy(weights, 0, newWeights, 0, index);
+        newWeights[index] = weight;
+        System.arraycopy(weights, index, newWeights, index + 1, mSize - index);
+        reset(newWeights);
+    }
+
+    /**
+     * Removes the entry at {@code index}, shifting the entries after it. Runs in O(n).
+     *
+     * @param index
+     */
+    public void remove(int index) {
+        int[] weights = getWeights();
+        int[] newWeights = new int[mSize - 1];
+        System.arraycopy(weights, 0, newWeights, 0, index);
+        System.arraycopy(weights, index + 1, newWeights, index, mSize - index - 1);
+        reset(newWeights);
+    }
+
+    /**
+     * @return the weights of all entries, recovered from the tree in O(n)
+     */
+    private int[] getWeights() {
+        int[] tree = mTree.clone();
+        for (int i = mSize; i >= 1; i--) {
+            int parent = i + (i & -i);
+            if (parent <= mSize) {
+                tree[parent] -= tree[i];
+            }
+        }
+        int[] weights = new int[mSize];
+        System.arraycopy(tree, 1, weights, 0, mSize);
+        return weights;
+    }
+
+    private void build() {
+        for (int i = 1; i <= mSize; i++) {
+            int parent = i + (i & -i);
+            if (parent <= mSize) {
+                mTree[parent] += mTree[i];
+            }
+        }
+    }
+
+    /**
+     * @return the number of entries in the index
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Adds {@code delta} to the weight of the entry at {@code index}.
+     *
+     * @param index
+     * @param delta
+     */
+    public void add(int index, int delta) {
+        for (int i = index + 1; i <= mSize; i += i & -i) {
+            mTree[i] += delta;
+        }
+    }
+
+    /**
+     * @param index
+     * @return the weight of the entry at {@code index}
+     */
+    public int get(int index) {
+        return getPrefixSum(index + 1) - getPrefixSum(index);
+    }
+
+    /**
+     * Returns the sum of the weights of all entries before {@code index}. With row count
+     * weights, this is the flat position of the parent at {@code index}.
+     *
+     * @param index
+     * @return sum of the weights of entries [0, index)
+     */
+    public int getPrefixSum(int index) {
+        int sum = 0;
+        for (int i = index; i > 0; i -= i & -i) {
+            sum += mTree[i];
+        }
+        return sum;
+    }
+
+    /**
+     * @return the sum of all weights in the index
+     */
+    public int getTotal() {
+        return getPrefixSum(mSize);
+    }
+
+    /**
+     * Finds the entry whose range of prefix sums contains {@code flatPosition}. With row count
+     * weights, this is the index of the top level parent that owns the row at that position.
+     *
+     * @param flatPosition
+     * @return the index of the entry, or {@link #size()} if the position is past the end
+     */
+    public int findIndex(int flatPosition) {
+        int index = 0;
+        int remaining = flatPosition;
+        for (int step = Integer.highestOneBit(Math.max(mSize, 1)); step > 0; step >>= 1) {
+            int next = index + step;
+            if (next <= mSize && mTree[next] <= remaining) {
+                index = next;
+                remaining -= mTree[next];
+            }
+        }
+        return index;
+    }
+}
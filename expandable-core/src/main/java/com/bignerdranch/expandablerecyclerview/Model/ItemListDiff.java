@@ -0,0 +1,219 @@
+package com.bignerdranch.expandablerecyclerview.Model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The minimal set of range insertions, removals and changes that turns one flattened list of
+ * rows into another.
+ * <p/>
+ * Rows are matched by {@link StableIdObject#getStableId()} when both implement it and by
+ * equals otherwise. A matched row whose new item is not equal to its old item is reported as
+ * changed. The common prefix and suffix are skipped, and the remaining rows are compared with
+ * Myers' O((N + M)D) algorithm. If they differ by more than {@link #MAX_EDIT_DISTANCE} edits,
+ * the remaining rows are reported as one removal and one insertion instead. Moved rows are
+ * reported as a removal and an insertion.
+ * <p/>
+ * Calculating a diff does not touch any adapter state and is safe to run on a worker thread.
+ */
+public class ItemListDiff {
+
+    public static final int MAX_EDIT_DISTANCE = 512;
+
+    /**
+     * Receives the updates of a diff, in an order where each position is valid at the time it
+     * is reported.
+     */
+    public interface Callback {
+
+        void onInserted(int position, int count);
+
+        void onRemoved(int position, int count);
+
+        void onChanged(int position, int count);
+    }
+
+    private static final int OP_INSERT = 0;
+    private static final int OP_REMOVE = 1;
+    private static final int OP_CHANGE = 2;
+
+    private final List<int[]> mOperations = new ArrayList<>();
+
+    private ItemListDiff() { }
+
+    /**
+     * Calculates the updates that turn {@code oldItems} into {@code newItems}.
+     *
+     * @param oldItems
+     * @param newItems
+     * @return the diff, ready to be dispatched
+     */
+    public static ItemListDiff calculate(Object[] oldItems, Object[] newItems) {
+        ItemListDiff diff = new ItemListDiff();
+        int oldEnd = oldItems.length;
+        int newEnd = newItems.length;
+        int start = 0;
+        while (start < oldEnd && start < newEnd && isSameItem(oldItems[start], newItems[start])) {
+            start++;
+        }
+        while (oldEnd > start && newEnd > start
+                && isSameItem(oldItems[oldEnd - 1], newItems[newEnd - 1])) {
+            oldEnd--;
+            newEnd--;
+        }
+
+        // Operations are recorded from the end of the list backwards so that every position is
+        // still valid in the partially updated list when it is dispatched.
+        diff.addChanges(oldItems, newItems, oldEnd, newEnd, oldItems.length - oldEnd);
+        if (!diff.addMyersOperations(oldItems, newItems, start, oldEnd, newEnd)) {
+            diff.add(OP_REMOVE, start, oldEnd - start);
+            diff.add(OP_INSERT, start, newEnd - start);
+        }
+        diff.addChanges(oldItems, newItems, 0, 0, start);
+        return diff;
+    }
+
+    /**
+     * @param oldItem
+     * @param newItem
+     * @return true if the two items represent the same row
+     */
+    public static boolean isSameItem(Object oldItem, Object newItem) {
+        if (oldItem instanceof StableIdObject && newItem instanceof StableIdObject) {
+            return ((StableIdObject) oldItem).getStableId() == ((StableIdObject) newItem).getStableId();
+        }
+        return oldItem == newItem || oldItem.equals(newItem);
+    }
+
+    /**
+     * @return true if the diff contains no updates
+     */
+    public boolean isEmpty() {
+        return mOperations.isEmpty();
+    }
+
+    /**
+     * Dispatches the updates to the callback.
+     *
+     * @param callback
+     */
+    public void dispatchTo(Callback callback) {
+        for (int i = 0; i < mOperations.size(); i++) {
+            int[] operation = mOperations.get(i);
+            switch (operation[0]) {
+                case OP_INSERT:
+                    callback.onInserted(operation[1], operation[2]);
+                    break;
+                case OP_REMOVE:
+                    callback.onRemoved(operation[1], operation[2]);
+                    break;
+                default:
+                    callback.onChanged(operation[1], operation[2]);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Records changes for the matched rows in [oldStart, oldStart + count), from last to first.
+     */
+    private void addChanges(Object[] oldItems, Object[] newItems, int oldStart, int newStart, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            Object oldItem = oldItems[oldStart + i];
+            Object newItem = newItems[newStart + i];
+            if (oldItem != newItem && !oldItem.equals(newItem)) {
+                add(OP_CHANGE, oldStart + i, 1);
+            }
+        }
+    }
+
+    /**
+     * Records the operations turning oldItems[start, oldEnd) into newItems[start, newEnd).
+     *
+     * @return false if the ranges differ by more than {@link #MAX_EDIT_DISTANCE} edits
+     */
+    private boolean addMyersOperations(Object[] oldItems, Object[] newItems, int start, int oldEnd, int newEnd) {
+        int n = oldEnd - start;
+        int m = newEnd - start;
+        int max = Math.min(n + m, MAX_EDIT_DISTANCE);
+        int offset = max + 1;
+        int[] v = new int[2 * offset + 1];
+        List<int[]> trace = new ArrayList<>();
+
+        int editDistance = -1;
+        for (int d = 0; d <= max && editDistance < 0; d++) {
+            // only diagonals -d - 1 to d + 1 are read when backtracking through step d
+            int[] snapshot = new int[2 * d + 3];
+            System.arraycopy(v, offset - d - 1, snapshot, 0, snapshot.length);
+            trace.add(snapshot);
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])) {
+                    x = v[offset + k + 1];
+                } else {
+                    x = v[offset + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && isSameItem(oldItems[start + x], newItems[start + y])) {
+                    x++;
+                    y++;
+                }
+                v[offset + k] = x;
+                if (x >= n && y >= m) {
+                    editDistance = d;
+                    break;
+                }
+            }
+        }
+        if (editDistance < 0) {
+            return false;
+        }
+
+        int x = n;
+        int y = m;
+        for (int d = editDistance; d > 0; d--) {
+            int[] previous = trace.get(d);
+            int k = x - y;
+            boolean insertion = k == -d
+                    || (k != d && previous[k - 1 + d + 1] < previous[k + 1 + d + 1]);
+            int previousK = insertion ? k + 1 : k - 1;
+            int previousX = previous[previousK + d + 1];
+            int previousY = previousX - previousK;
+            int snakeStartX = insertion ? previousX : previousX + 1;
+            int snakeLength = x - snakeStartX;
+            addChanges(oldItems, newItems, start + snakeStartX, start + y - snakeLength, snakeLength);
+            if (insertion) {
+                add(OP_INSERT, start + previousX, 1);
+            } else {
+                add(OP_REMOVE, start + previousX, 1);
+            }
+            x = previousX;
+            y = previousY;
+        }
+        addChanges(oldItems, newItems, start, start, x);
+        return true;
+    }
+
+    /**
+     * Records an operation, merging it into the previous one when they form a single range.
+     */
+    private void add(int type, int position, int count) {
+        if (count <= 0) {
+            return;
+        }
+        if (!mOperations.isEmpty()) {
+            int[] last = mOperations.get(mOperations.size() - 1);
+            if (last[0] == type) {
+                if (type == OP_INSERT && last[1] == position) {
+                    last[2] += count;
+                    return;
+                } else if (type != OP_INSERT && last[1] == position + count) {
+                    last[1] = position;
+                    last[2] += count;
+                    return;
+                }
+            }
+        }
+        mOperations.add(new int[]{type, position, count});
+    }
+}
@@ -0,0 +1,454 @@
+package com.bignerdranch.expandablerecyclerview.Model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ExpandableItemList that stores every visible row.
+ * <p/>
+ * Each row is stored as an item reference plus a packed int node holding its view type,
+ * expanded flag and nesting depth, in two arrays that are always shifted together. The node
+ * table is filled in when rows are inserted, so view type lookups while scrolling are a single
+ * primitive array read. Expanding or collapsing a parent splices one contiguous range of rows
+ * in or out with a single array copy.
+ */
+public class MaterializedItemList extends ExpandableItemList {
+
+    private static final int TYPE_MASK     = 0xf;
+    private static final int FLAG_EXPANDED = 1 << 4;
+    private static final int DEPTH_SHIFT   = 8;
+    private static final int MIN_CAPACITY  = 16;
+
+    private Object[] mItems;
+    private int[]    mNodes;
+    private int      mSize;
+    private int      mNextParentOrdinal;
+
+    private final FlatPositionIndex mPositionIndex;
+    private final FlatPositionIndex mNestedParentIndex;
+
+    /**
+     * Creates a list containing one collapsed row per ParentObject.
+     *
+     * @param parentItemList
+     * @throws IllegalStateException if the list contains a null ParentObject
+     */
+    public MaterializedItemList(List<? extends ParentObject> parentItemList) {
+        int parentCount = parentItemList.size();
+        mItems = new Object[Math.max(parentCount, MIN_CAPACITY)];
+        mNodes = new int[mItems.length];
+        for (int i = 0; i < parentCount; i++) {
+            mItems[i] = parentItemList.get(i);
+            if (mItems[i] == null) {
+                throw new IllegalStateException("Null object added");
+            }
+            mNodes[i] = TYPE_PARENT;
+        }
+        mSize = parentCount;
+        mPositionIndex = new FlatPositionIndex(parentCount, 1);
+        mNestedParentIndex = new FlatPositionIndex(parentCount, 0);
+    }
+
+    @Override
+    public Object get(int position) {
+        checkPosition(position);
+        return mItems[position];
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    @Override
+    public int getViewType(int position) {
+        checkPosition(position);
+        return mNodes[position] & TYPE_MASK;
+    }
+
+    @Override
+    public boolean isExpanded(int position) {
+        checkPosition(position);
+        return (mNodes[position] & FLAG_EXPANDED) != 0;
+    }
+
+    @Override
+    public int getDepth(int position) {
+        checkPosition(position);
+        return mNodes[position] >>> DEPTH_SHIFT;
+    }
+
+    @Override
+    public int expandParent(int position) {
+        return expandParent(position, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int expandParent(int position, int maxChildCount) {
+        checkPosition(position);
+        mNodes[position] |= FLAG_EXPANDED;
+        return showMoreChildren(position, 0, maxChildCount);
+    }
+
+    @Override
+    public int showMoreChildren(int position, int fromChildIndex, int maxChildCount) {
+        checkPosition(position);
+        List<?> childObjectList = ((ParentObject) mItems[position]).getChildObjectList();
+        if (childObjectList == null || fromChildIndex >= childObjectList.size()) {
+            return 0;
+        }
+        int toChildIndex = (int) Math.min((long) fromChildIndex + maxChildCount, childObjectList.size());
+        List<?> children = fromChildIndex == 0 && toChildIndex == childObjectList.size()
+                ? childObjectList
+                : childObjectList.subList(fromChildIndex, toChildIndex);
+        int insertPosition = fromChildIndex == 0 ? position + 1 : getSubtreeEnd(position);
+        int childCount = children.size();
+        int nestedParentCount = insertRows(insertPosition, children, getDepth(position) + 1);
+        updatePositionIndex(position, childCount, nestedParentCount);
+        return childCount;
+    }
+
+    @Override
+    public int collapseParent(int position) {
+        checkPosition(position);
+        mNodes[position] &= ~FLAG_EXPANDED;
+
+        int endPosition = getSubtreeEnd(position);
+        int removedCount = endPosition - position - 1;
+        if (removedCount > 0) {
+            int nestedParentCount = removeRows(position + 1, endPosition);
+            updatePositionIndex(position, -removedCount, -nestedParentCount);
+        }
+        return removedCount;
+    }
+
+    @Override
+    public int getSubtreeEnd(int position) {
+        checkPosition(position);
+        int depth = mNodes[position] >>> DEPTH_SHIFT;
+        int endPosition = position + 1;
+        while (endPosition < mSize && (mNodes[endPosition] >>> DEPTH_SHIFT) > depth) {
+            endPosition++;
+        }
+        return endPosition;
+    }
+
+    @Override
+    public int getParentRowCountBefore(int position) {
+        if (position == 0) {
+            return 0;
+        }
+
+        int parentIndex = mPositionIndex.findIndex(position);
+        int parentPosition = mPositionIndex.getPrefixSum(parentIndex);
+        int parentCount = parentIndex + mNestedParentIndex.getPrefixSum(parentIndex);
+        for (int i = parentPosition; i < position; i++) {
+            if ((mNodes[i] & TYPE_MASK) == TYPE_PARENT) {
+                parentCount++;
+            }
+        }
+        return parentCount;
+    }
+
+    @Override
+    public int getParentPosition(int parentIndex) {
+        return mPositionIndex.getPrefixSum(parentIndex);
+    }
+
+    @Override
+    public int getChildPosition(int parentIndex, int childIndex) {
+        int parentPosition = mPositionIndex.getPrefixSum(parentIndex);
+        if ((mNodes[parentPosition] & FLAG_EXPANDED) == 0) {
+            return -1;
+        }
+        if (mNestedParentIndex.get(parentIndex) == 0) {
+            return parentPosition + 1 + childIndex;
+        }
+        int position = parentPosition + 1;
+        for (int i = 0; i < childIndex; i++) {
+            position = getSubtreeEnd(position);
+        }
+        return position;
+    }
+
+    @Override
+    public int insertParent(int parentIndex, ParentObject parentObject) {
+        int position = mPositionIndex.getPrefixSum(parentIndex);
+        insertRows(position, Collections.singletonList(parentObject), 0);
+        mPositionIndex.insert(parentIndex, 1);
+        mNestedParentIndex.insert(parentIndex, 0);
+        return position;
+    }
+
+    @Override
+    public int removeParent(int parentIndex) {
+        int position = mPositionIndex.getPrefixSum(parentIndex);
+        int rowCount = mPositionIndex.get(parentIndex);
+        removeRows(position, position + rowCount);
+        mPositionIndex.remove(parentIndex);
+        mNestedParentIndex.remove(parentIndex);
+        return rowCount;
+    }
+
+    @Override
+    public int changeParent(int parentIndex, ParentObject parentObject) {
+        if (parentObject == null) {
+            throw new IllegalStateException("Null object added");
+        }
+        int position = mPositionIndex.getPrefixSum(parentIndex);
+        int removedCount = 0;
+        if (mItems[position] != parentObject) {
+            removedCount = collapseParent(position);
+        }
+        mItems[position] = parentObject;
+        modCount++;
+        return removedCount;
+    }
+
+    @Override
+    public int insertChild(int parentIndex, int childIndex) {
+        int position = getChildPosition(parentIndex, childIndex);
+        if (position < 0) {
+            return -1;
+        }
+        Object child = getChildObject(parentIndex, childIndex);
+        int nestedParentCount = insertRows(position, Collections.singletonList(child), 1);
+        mPositionIndex.add(parentIndex, 1);
+        mNestedParentIndex.add(parentIndex, nestedParentCount);
+        return position;
+    }
+
+    @Override
+    public int removeChild(int parentIndex, int childIndex) {
+        int position = getChildPosition(parentIndex, childIndex);
+        if (position < 0) {
+            return 0;
+        }
+        int endPosition = getSubtreeEnd(position);
+        int nestedParentCount = removeRows(position, endPosition);
+        mPositionIndex.add(parentIndex, position - endPosition);
+        mNestedParentIndex.add(parentIndex, -nestedParentCount);
+        return endPosition - position;
+    }
+
+    @Override
+    public int changeChild(int parentIndex, int childIndex) {
+        int position = getChildPosition(parentIndex, childIndex);
+        if (position < 0) {
+            return 0;
+        }
+        Object child = getChildObject(parentIndex, childIndex);
+        int node = createNode(child, 1);
+        int removedCount = 0;
+        if (mItems[position] == child) {
+            node = mNodes[position];
+        } else {
+            int endPosition = getSubtreeEnd(position);
+            removedCount = endPosition - position - 1;
+            if (removedCount > 0) {
+                int nestedParentCount = removeRows(position + 1, endPosition);
+                mPositionIndex.add(parentIndex, -removedCount);
+                mNestedParentIndex.add(parentIndex, -nestedParentCount);
+            }
+            int oldParentCount = (mNodes[position] & TYPE_MASK) == TYPE_PARENT ? 1 : 0;
+            int newParentCount = (node & TYPE_MASK) == TYPE_PARENT ? 1 : 0;
+            mNestedParentIndex.add(parentIndex, newParentCount - oldParentCount);
+        }
+        mItems[position] = child;
+        mNodes[position] = node;
+        modCount++;
+        return removedCount;
+    }
+
+    @Override
+    public int expandMatching(ExpansionFilter expansionFilter) {
+        Object[] oldItems = mItems;
+        int[] oldNodes = mNodes;
+        int oldSize = mSize;
+        mItems = new Object[oldItems.length];
+        mNodes = new int[oldItems.length];
+        mSize = 0;
+        mNextParentOrdinal = 0;
+
+        for (int i = 0; i < oldSize; i++) {
+            appendRow(oldItems[i], oldNodes[i]);
+            if ((oldNodes[i] & TYPE_MASK) != TYPE_PARENT) {
+                continue;
+            }
+            int parentOrdinal = mNextParentOrdinal++;
+            if ((oldNodes[i] & FLAG_EXPANDED) == 0
+                    && expansionFilter.shouldExpand(oldItems[i], parentOrdinal)) {
+                mNodes[mSize - 1] |= FLAG_EXPANDED;
+                appendChildren((ParentObject) oldItems[i], (oldNodes[i] >>> DEPTH_SHIFT) + 1, expansionFilter);
+            }
+        }
+        modCount++;
+        rebuildPositionIndex();
+        return mSize - oldSize;
+    }
+
+    @Override
+    public int collapseAllParents() {
+        int oldSize = mSize;
+        int newSize = 0;
+        for (int i = 0; i < oldSize; i++) {
+            if ((mNodes[i] >>> DEPTH_SHIFT) == 0) {
+                mItems[newSize] = mItems[i];
+                mNodes[newSize] = TYPE_PARENT;
+                newSize++;
+            }
+        }
+        Arrays.fill(mItems, newSize, oldSize, null);
+        mSize = newSize;
+        modCount++;
+        mPositionIndex.reset(newSize, 1);
+        mNestedParentIndex.reset(newSize, 0);
+        return oldSize - newSize;
+    }
+
+    /**
+     * Appends the children of the given parent at the given depth, recursively expanding any
+     * child parents accepted by the filter.
+     *
+     * @param parentObject
+     * @param depth
+     * @param expansionFilter
+     */
+    private void appendChildren(ParentObject parentObject, int depth, ExpansionFilter expansionFilter) {
+        List<?> childObjectList = parentObject.getChildObjectList();
+        if (childObjectList == null) {
+            return;
+        }
+        for (int i = 0; i < childObjectList.size(); i++) {
+            Object child = childObjectList.get(i);
+            appendRow(child, createNode(child, depth));
+            if (child instanceof ParentObject
+                    && expansionFilter.shouldExpand(child, mNextParentOrdinal++)) {
+                mNodes[mSize - 1] |= FLAG_EXPANDED;
+                appendChildren((ParentObject) child, depth + 1, expansionFilter);
+            }
+        }
+    }
+
+    private Object getChildObject(int parentIndex, int childIndex) {
+        ParentObject parentObject = (ParentObject) mItems[mPositionIndex.getPrefixSum(parentIndex)];
+        return parentObject.getChildObjectList().get(childIndex);
+    }
+
+    private void appendRow(Object item, int node) {
+        ensureCapacity(mSize + 1);
+        mItems[mSize] = item;
+        mNodes[mSize] = node;
+        mSize++;
+    }
+
+    /**
+     * Rebuilds the position indexes from the rows in a single pass.
+     */
+    private void rebuildPositionIndex() {
+        int parentCount = mPositionIndex.size();
+        int[] rowCounts = new int[parentCount];
+        int[] nestedParentCounts = new int[parentCount];
+        int parentIndex = -1;
+        for (int i = 0; i < mSize; i++) {
+            if ((mNodes[i] >>> DEPTH_SHIFT) == 0) {
+                parentIndex++;
+            } else if ((mNodes[i] & TYPE_MASK) == TYPE_PARENT) {
+                nestedParentCounts[parentIndex]++;
+            }
+            rowCounts[parentIndex]++;
+        }
+        mPositionIndex.reset(rowCounts);
+        mNestedParentIndex.reset(nestedParentCounts);
+    }
+
+    /**
+     * Updates the weights of the top level parent owning the row at the specified position after
+     * rows were added below it (positive deltas) or removed (negative deltas).
+     *
+     * @param position
+     * @param rowDelta
+     * @param nestedParentDelta
+     */
+    private void updatePositionIndex(int position, int rowDelta, int nestedParentDelta) {
+        int parentIndex = mPositionIndex.findIndex(position);
+        mPositionIndex.add(parentIndex, rowDelta);
+        mNestedParentIndex.add(parentIndex, nestedParentDelta);
+    }
+
+    /**
+     * Inserts the given items as collapsed rows at the given depth, shifting the rows after them
+     * once.
+     *
+     * @param position
+     * @param items
+     * @param depth
+     * @return the number of ParentObjects inserted
+     */
+    private int insertRows(int position, List<?> items, int depth) {
+        int count = items.size();
+        ensureCapacity(mSize + count);
+        System.arraycopy(mItems, position, mItems, position + count, mSize - position);
+        System.arraycopy(mNodes, position, mNodes, position + count, mSize - position);
+
+        int parentCount = 0;
+        for (int i = 0; i < count; i++) {
+            Object item = items.get(i);
+            mItems[position + i] = item;
+            mNodes[position + i] = createNode(item, depth);
+            if (item instanceof ParentObject) {
+                parentCount++;
+            }
+        }
+        mSize += count;
+        modCount++;
+        return parentCount;
+    }
+
+    /**
+     * Removes the rows in [fromPosition, toPosition), shifting the rows after them once.
+     *
+     * @param fromPosition
+     * @param toPosition
+     * @return the number of ParentObjects removed
+     */
+    private int removeRows(int fromPosition, int toPosition) {
+        int parentCount = 0;
+        for (int i = fromPosition; i < toPosition; i++) {
+            if ((mNodes[i] & TYPE_MASK) == TYPE_PARENT) {
+                parentCount++;
+            }
+        }
+        System.arraycopy(mItems, toPosition, mItems, fromPosition, mSize - toPosition);
+        System.arraycopy(mNodes, toPosition, mNodes, fromPosition, mSize - toPosition);
+        int newSize = mSize - (toPosition - fromPosition);
+        Arrays.fill(mItems, newSize, mSize, null);
+        mSize = newSize;
+        modCount++;
+        return parentCount;
+    }
+
+    /**
+     * @param item
+     * @param depth
+     * @return the node for a collapsed row holding the given item at the given depth
+     * @throws IllegalStateException if the item is null
+     */
+    private static int createNode(Object item, int depth) {
+        if (item == null) {
+            throw new IllegalStateException("Null object added");
+        }
+        int type = item instanceof ParentObject ? TYPE_PARENT : TYPE_CHILD;
+        return (depth << DEPTH_SHIFT) | type;
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity <= mItems.length) {
+            return;
+        }
+        int newCapacity = Math.max(minCapacity, mItems.length + (mItems.length >> 1));
+        mItems = Arrays.copyOf(mItems, newCapacity);
+        mNodes = Arrays.copyOf(mNodes, newCapacity);
+    }
+}
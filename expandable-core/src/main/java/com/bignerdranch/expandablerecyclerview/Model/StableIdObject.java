@@ -0,0 +1,21 @@
+package com.bignerdranch.expandablerecyclerview.Model;
+
+/**
+ * Optional interface for ParentObjects and child objects that can be identified by a stable id.
+ * The id must be unique among all parents and children shown by the adapter and must not change
+ * when the list is reordered or reloaded.
+ * <p/>
+ * The adapter returns these ids from getItemId. If every parent and child implements this
+ * interface, call setHasStableIds(true) on the adapter before attaching it so the RecyclerView
+ * can match rows by identity across structural changes.
+ * <p/>
+ * When every expanded ParentObject implements this, the adapter also saves expanded states by
+ * id rather than by position, so they are restored correctly even if the data was reordered.
+ */
+public interface StableIdObject {
+
+    /**
+     * @return a unique id for this object that does not change over its lifetime
+     */
+    long getStableId();
+}
@@ -0,0 +1,299 @@
+package com.bignerdranch.expandablerecyclerview.Model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ExpandableItemList that never copies child rows.
+ * <p/>
+ * Only one entry per top level parent is stored: a reference to its child list while it is
+ * expanded, and its row count in a {@link FlatPositionIndex}. A flat position is resolved to a
+ * parent and child index through the index, so memory is O(parents) and expanding or collapsing
+ * a parent is O(log n) regardless of how many children it has.
+ * <p/>
+ * Only two levels are supported: children that are themselves ParentObjects are shown as
+ * ordinary child rows and cannot be expanded.
+ */
+public class VirtualItemList extends ExpandableItemList {
+
+    private final List<? extends ParentObject> mParentItemList;
+    private final FlatPositionIndex            mPositionIndex;
+    private List<?>[]                          mChildLists;
+    private int[]                              mChildCounts;
+    private int                                mSize;
+
+    private int mCachedParentIndex = -1;
+    private int mCachedParentPosition;
+    private int mCachedEndPosition;
+
+    /**
+     * Creates a list containing one collapsed row per ParentObject.
+     *
+     * @param parentItemList
+     * @throws IllegalStateException if the list contains a null ParentObject
+     */
+    public VirtualItemList(List<? extends ParentObject> parentItemList) {
+        int parentCount = parentItemList.size();
+        for (int i = 0; i < parentCount; i++) {
+            if (parentItemList.get(i) == null) {
+                throw new IllegalStateException("Null object added");
+            }
+        }
+        mParentItemList = parentItemList;
+        mPositionIndex = new FlatPositionIndex(parentCount, 1);
+        mChildLists = new List<?>[parentCount];
+        mChildCounts = new int[parentCount];
+        mSize = parentCount;
+    }
+
+    @Override
+    public Object get(int position) {
+        int parentIndex = findParentIndex(position);
+        if (position == mCachedParentPosition) {
+            return mParentItemList.get(parentIndex);
+        }
+        return mChildLists[parentIndex].get(position - mCachedParentPosition - 1);
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    @Override
+    public int getViewType(int position) {
+        findParentIndex(position);
+        return position == mCachedParentPosition ? TYPE_PARENT : TYPE_CHILD;
+    }
+
+    @Override
+    public boolean isExpanded(int position) {
+        int parentIndex = findParentIndex(position);
+        return position == mCachedParentPosition && mChildLists[parentIndex] != null;
+    }
+
+    @Override
+    public int getDepth(int position) {
+        findParentIndex(position);
+        return position == mCachedParentPosition ? 0 : 1;
+    }
+
+    @Override
+    public int expandParent(int position) {
+        return expandParent(position, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int expandParent(int position, int maxChildCount) {
+        int parentIndex = findParentIndex(position);
+        List<?> childObjectList = mParentItemList.get(parentIndex).getChildObjectList();
+        mChildLists[parentIndex] = childObjectList == null ? Collections.emptyList() : childObjectList;
+        return showMoreChildren(position, 0, maxChildCount);
+    }
+
+    @Override
+    public int showMoreChildren(int position, int fromChildIndex, int maxChildCount) {
+        int parentIndex = findParentIndex(position);
+        List<?> childObjectList = mChildLists[parentIndex];
+        if (childObjectList == null) {
+            return 0;
+        }
+        int childCount = Math.max(0, Math.min(childObjectList.size() - mChildCounts[parentIndex], maxChildCount));
+        mChildCounts[parentIndex] += childCount;
+        mPositionIndex.add(parentIndex, childCount);
+        mSize += childCount;
+        mCachedParentIndex = -1;
+        modCount++;
+        return childCount;
+    }
+
+    @Override
+    public int collapseParent(int position) {
+        int parentIndex = findParentIndex(position);
+        int childCount = mChildCounts[parentIndex];
+        mChildLists[parentIndex] = null;
+        mChildCounts[parentIndex] = 0;
+        mPositionIndex.add(parentIndex, -childCount);
+        mSize -= childCount;
+        mCachedParentIndex = -1;
+        modCount++;
+        return childCount;
+    }
+
+    @Override
+    public int getParentPosition(int parentIndex) {
+        return mPositionIndex.getPrefixSum(parentIndex);
+    }
+
+    @Override
+    public int getChildPosition(int parentIndex, int childIndex) {
+        if (mChildLists[parentIndex] == null) {
+            return -1;
+        }
+        return mPositionIndex.getPrefixSum(parentIndex) + 1 + childIndex;
+    }
+
+    @Override
+    public int insertParent(int parentIndex, ParentObject parentObject) {
+        if (parentObject == null) {
+            throw new IllegalStateException("Null object added");
+        }
+        int parentCount = mChildLists.length;
+        List<?>[] childLists = new List<?>[parentCount + 1];
+        int[] childCounts = new int[parentCount + 1];
+        System.arraycopy(mChildLists, 0, childLists, 0, parentIndex);
+        System.arraycopy(mChildLists, parentIndex, childLists, parentIndex + 1, parentCount - parentIndex);
+        System.arraycopy(mChildCounts, 0, childCounts, 0, parentIndex);
+        System.arraycopy(mChildCounts, parentIndex, childCounts, parentIndex + 1, parentCount - parentIndex);
+        mChildLists = childLists;
+        mChildCounts = childCounts;
+        mPositionIndex.insert(parentIndex, 1);
+        mSize++;
+        mCachedParentIndex = -1;
+        modCount++;
+        return mPositionIndex.getPrefixSum(parentIndex);
+    }
+
+    @Override
+    public int removeParent(int parentIndex) {
+        int rowCount = 1 + mChildCounts[parentIndex];
+        int parentCount = mChildLists.length;
+        List<?>[] childLists = new List<?>[parentCount - 1];
+        int[] childCounts = new int[parentCount - 1];
+        System.arraycopy(mChildLists, 0, childLists, 0, parentIndex);
+        System.arraycopy(mChildLists, parentIndex + 1, childLists, parentIndex, parentCount - parentIndex - 1);
+        System.arraycopy(mChildCounts, 0, childCounts, 0, parentIndex);
+        System.arraycopy(mChildCounts, parentIndex + 1, childCounts, parentIndex, parentCount - parentIndex - 1);
+        mChildLists = childLists;
+        mChildCounts = childCounts;
+        mPositionIndex.remove(parentIndex);
+        mSize -= rowCount;
+        mCachedParentIndex = -1;
+        modCount++;
+        return rowCount;
+    }
+
+    @Override
+    public int changeParent(int parentIndex, ParentObject parentObject) {
+        if (parentObject == null) {
+            throw new IllegalStateException("Null object added");
+        }
+        // the old parent is gone from the parent list, so a replacement is detected by its
+        // child list no longer being the one shown
+        List<?> childObjectList = parentObject.getChildObjectList();
+        if (childObjectList == null) {
+            childObjectList = Collections.emptyList();
+        }
+        int removedCount = 0;
+        if (mChildLists[parentIndex] != null && mChildLists[parentIndex] != childObjectList) {
+            removedCount = collapseParent(mPositionIndex.getPrefixSum(parentIndex));
+        }
+        modCount++;
+        return removedCount;
+    }
+
+    @Override
+    public int insertChild(int parentIndex, int childIndex) {
+        return updateChildCount(parentIndex, childIndex, 1);
+    }
+
+    @Override
+    public int removeChild(int parentIndex, int childIndex) {
+        return updateChildCount(parentIndex, childIndex, -1) < 0 ? 0 : 1;
+    }
+
+    @Override
+    public int changeChild(int parentIndex, int childIndex) {
+        updateChildCount(parentIndex, childIndex, 0);
+        return 0;
+    }
+
+    @Override
+    public int expandMatching(ExpansionFilter expansionFilter) {
+        int oldSize = mSize;
+        int parentCount = mChildLists.length;
+        int[] rowCounts = new int[parentCount];
+        for (int i = 0; i < parentCount; i++) {
+            ParentObject parentObject = mParentItemList.get(i);
+            if (mChildLists[i] == null && expansionFilter.shouldExpand(parentObject, i)) {
+                List<?> childObjectList = parentObject.getChildObjectList();
+                mChildLists[i] = childObjectList == null ? Collections.emptyList() : childObjectList;
+                mChildCounts[i] = mChildLists[i].size();
+                mSize += mChildCounts[i];
+            }
+            rowCounts[i] = 1 + mChildCounts[i];
+        }
+        mPositionIndex.reset(rowCounts);
+        mCachedParentIndex = -1;
+        modCount++;
+        return mSize - oldSize;
+    }
+
+    @Override
+    public int collapseAllParents() {
+        int oldSize = mSize;
+        Arrays.fill(mChildLists, null);
+        Arrays.fill(mChildCounts, 0);
+        mPositionIndex.reset(mChildLists.length, 1);
+        mSize = mChildLists.length;
+        mCachedParentIndex = -1;
+        modCount++;
+        return oldSize - mSize;
+    }
+
+    @Override
+    public int getSubtreeEnd(int position) {
+        findParentIndex(position);
+        return position == mCachedParentPosition ? mCachedEndPosition : position + 1;
+    }
+
+    @Override
+    public int getParentRowCountBefore(int position) {
+        int parentIndex = findParentIndex(position);
+        return position == mCachedParentPosition ? parentIndex : parentIndex + 1;
+    }
+
+    /**
+     * Refreshes the child list of an expanded parent after one of its children was inserted,
+     * removed or changed, and moves its row count by {@code delta}.
+     *
+     * @param parentIndex
+     * @param childIndex
+     * @param delta
+     * @return the flat position of the child, or -1 if the parent is collapsed
+     */
+    private int updateChildCount(int parentIndex, int childIndex, int delta) {
+        int position = getChildPosition(parentIndex, childIndex);
+        if (position < 0) {
+            return -1;
+        }
+        List<?> childObjectList = mParentItemList.get(parentIndex).getChildObjectList();
+        mChildLists[parentIndex] = childObjectList == null ? Collections.emptyList() : childObjectList;
+        mChildCounts[parentIndex] += delta;
+        mPositionIndex.add(parentIndex, delta);
+        mSize += delta;
+        mCachedParentIndex = -1;
+        modCount++;
+        return position;
+    }
+
+    /**
+     * Resolves the top level parent owning the row at the specified position and caches its
+     * range, so the lookups made for the same row or its neighbours while binding skip the index.
+     *
+     * @param position
+     * @return the index of the parent owning the row
+     */
+    private int findParentIndex(int position) {
+        checkPosition(position);
+        if (mCachedParentIndex < 0
+                || position < mCachedParentPosition || position >= mCachedEndPosition) {
+            int parentIndex = mPositionIndex.findIndex(position);
+            mCachedParentIndex = parentIndex;
+            mCachedParentPosition = mPositionIndex.getPrefixSum(parentIndex);
+            mCachedEndPosition = mCachedParentPosition + 1 + mChildCounts[parentIndex];
+        }
+        return mCachedParentIndex;
+    }
+}
@@ -0,0 +1,143 @@
+package com.bignerdranch.expandablerecyclerview.Model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ChildListCacheTest {
+
+    @Test
+    public void takeReturnsStoredListOnce() {
+        ChildListCache cache = new ChildListCache(4, 100);
+        TestParent parent = new TestParent("P", 1);
+        List<String> children = Arrays.asList("a", "b");
+        cache.put(parent, children);
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.getWeight());
+
+        assertSame(children, cache.take(parent));
+        assertNull(cache.take(parent));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0, cache.getWeight());
+    }
+
+    @Test
+    public void removeDropsListWithoutCounting() {
+        ChildListCache cache = new ChildListCache(4, 100);
+        TestParent parent = new TestParent("P", 1);
+        List<String> children = Arrays.asList("a", "b");
+        cache.put(parent, children);
+
+        assertSame(children, cache.remove(parent));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+        assertEquals(0, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+        assertNull(cache.remove(parent));
+    }
+
+    @Test
+    public void matchesParentsByIdentity() {
+        ChildListCache cache = new ChildListCache(4, 100);
+        ParentObject parent = new HashedParent();
+        List<String> children = Arrays.asList("a");
+        parent.setChildObjectList(children);
+        cache.put(parent, children);
+        parent.setChildObjectList(null);
+
+        assertNull(cache.take(new HashedParent()));
+        assertSame(children, cache.take(parent));
+    }
+
+    @Test
+    public void evictsLeastRecentlyStoredLists() {
+        ChildListCache cache = new ChildListCache(2, 100);
+        TestParent first = new TestParent("1", 1);
+        TestParent second = new TestParent("2", 2);
+        TestParent third = new TestParent("3", 3);
+        cache.put(first, Arrays.asList("a"));
+        cache.put(second, Arrays.asList("b"));
+        cache.put(third, Arrays.asList("c"));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.take(first));
+    }
+
+    @Test
+    public void evictsToStayWithinWeight() {
+        ChildListCache cache = new ChildListCache(10, 3);
+        TestParent first = new TestParent("1", 1);
+        TestParent second = new TestParent("2", 2);
+        cache.put(first, Arrays.asList("a", "b"));
+        cache.put(second, Arrays.asList("c", "d"));
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.getWeight());
+        assertNull(cache.take(first));
+    }
+
+    @Test
+    public void customWeigher() {
+        ChildListCache cache = new ChildListCache(10, 10);
+        cache.setWeigher(new ChildListCache.Weigher() {
+            @Override
+            public int getWeight(ParentObject parentObject, List<?> childObjectList) {
+                return 5;
+            }
+        });
+        cache.put(new TestParent("1", 1), Arrays.asList("a"));
+        cache.put(new TestParent("2", 2), Arrays.asList("b"));
+        cache.put(new TestParent("3", 3), Arrays.asList("c"));
+        assertEquals(2, cache.size());
+        assertEquals(10, cache.getWeight());
+    }
+
+    @Test
+    public void restoreAllGivesListsBack() {
+        ChildListCache cache = new ChildListCache(4, 100);
+        TestParent parent = new TestParent("P", 1);
+        List<String> children = Arrays.asList("a");
+        cache.put(parent, children);
+        parent.setChildObjectList(null);
+
+        assertEquals(Arrays.<ParentObject>asList(parent), cache.restoreAll());
+        assertSame(children, parent.getChildObjectList());
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    /**
+     * Value-style parent whose hashCode depends on its child list.
+     */
+    private static class HashedParent implements ParentObject {
+
+        private List<? extends Object> mChildObjectList;
+
+        @Override
+        public List<? extends Object> getChildObjectList() {
+            return mChildObjectList;
+        }
+
+        @Override
+        public void setChildObjectList(List<? extends Object> childObjectList) {
+            mChildObjectList = childObjectList;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof HashedParent && (mChildObjectList == null
+                    ? ((HashedParent) o).mChildObjectList == null
+                    : mChildObjectList.equals(((HashedParent) o).mChildObjectList));
+        }
+
+        @Override
+        public int hashCode() {
+            return mChildObjectList == null ? 0 : mChildObjectList.hashCode();
+        }
+    }
+}
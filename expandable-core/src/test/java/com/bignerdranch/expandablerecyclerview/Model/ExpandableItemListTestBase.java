@@ -0,0 +1,281 @@
+package com.bignerdranch.expandablerecyclerview.Model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Behavior shared by both engines, on a two level tree. Not run by itself; each engine has a
+ * test class extending it.
+ */
+public abstract class ExpandableItemListTestBase {
+
+    protected TestParent         mA;
+    protected TestParent         mB;
+    protected TestParent         mC;
+    protected TestParent         mD;
+    protected List<ParentObject> mParents;
+
+    protected abstract ExpandableItemList createItemList(List<ParentObject> parentItemList);
+
+    @Before
+    public void setUp() {
+        mA = new TestParent("A", 1, "a0", "a1");
+        mB = new TestParent("B", 2);
+        mC = new TestParent("C", 3, "c0", "c1", "c2");
+        mD = new TestParent("D", 4, "d0");
+        mParents = new ArrayList<ParentObject>(Arrays.asList(mA, mB, mC, mD));
+    }
+
+    protected static void assertRows(ExpandableItemList itemList, Object... rows) {
+        assertArrayEquals(rows, itemList.toArray());
+    }
+
+    @Test
+    public void startsWithCollapsedParents() {
+        ExpandableItemList itemList = createItemList(mParents);
+        assertRows(itemList, mA, mB, mC, mD);
+        for (int i = 0; i < itemList.size(); i++) {
+            assertTrue(itemList.isParent(i));
+            assertFalse(itemList.isExpanded(i));
+            assertEquals(0, itemList.getDepth(i));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsNullParents() {
+        createItemList(Arrays.<ParentObject>asList(mA, null));
+    }
+
+    @Test
+    public void expandAndCollapseParent() {
+        ExpandableItemList itemList = createItemList(mParents);
+        assertEquals(3, itemList.expandParent(2));
+        assertRows(itemList, mA, mB, mC, "c0", "c1", "c2", mD);
+        assertTrue(itemList.isExpanded(2));
+        assertEquals(ExpandableItemList.TYPE_CHILD, itemList.getViewType(3));
+        assertEquals(1, itemList.getDepth(4));
+        assertEquals(6, itemList.getSubtreeEnd(2));
+
+        assertEquals(2, itemList.expandParent(0));
+        assertRows(itemList, mA, "a0", "a1", mB, mC, "c0", "c1", "c2", mD);
+        assertEquals(2, itemList.collapseParent(0));
+        assertRows(itemList, mA, mB, mC, "c0", "c1", "c2", mD);
+        assertEquals(3, itemList.collapseParent(2));
+        assertRows(itemList, mA, mB, mC, mD);
+        assertFalse(itemList.isExpanded(2));
+    }
+
+    @Test
+    public void expandParentWithoutChildren() {
+        ExpandableItemList itemList = createItemList(mParents);
+        assertEquals(0, itemList.expandParent(1));
+        assertTrue(itemList.isExpanded(1));
+        assertEquals(0, itemList.collapseParent(1));
+        assertEquals(4, itemList.size());
+    }
+
+    @Test
+    public void modificationCountChangesOnExpansion() {
+        ExpandableItemList itemList = createItemList(mParents);
+        int modificationCount = itemList.getModificationCount();
+        itemList.expandParent(0);
+        assertTrue(itemList.getModificationCount() != modificationCount);
+    }
+
+    @Test
+    public void parentAndChildPositions() {
+        ExpandableItemList itemList = createItemList(mParents);
+        itemList.expandParent(0);
+        itemList.expandParent(4);
+        assertRows(itemList, mA, "a0", "a1", mB, mC, "c0", "c1", "c2", mD);
+        assertEquals(0, itemList.getParentPosition(0));
+        assertEquals(3, itemList.getParentPosition(1));
+        assertEquals(4, itemList.getParentPosition(2));
+        assertEquals(8, itemList.getParentPosition(3));
+        assertEquals(2, itemList.getChildPosition(0, 1));
+        assertEquals(6, itemList.getChildPosition(2, 1));
+        assertEquals(-1, itemList.getChildPosition(3, 0));
+
+        assertEquals(0, itemList.getParentRowCountBefore(0));
+        assertEquals(1, itemList.getParentRowCountBefore(2));
+        assertEquals(2, itemList.getParentRowCountBefore(4));
+        assertEquals(3, itemList.getParentRowCountBefore(8));
+    }
+
+    @Test
+    public void partialExpansion() {
+        ExpandableItemList itemList = createItemList(mParents);
+        assertEquals(1, itemList.expandParent(2, 1));
+        assertRows(itemList, mA, mB, mC, "c0", mD);
+        assertTrue(itemList.isExpanded(2));
+        assertEquals(1, itemList.showMoreChildren(2, 1, 1));
+        assertEquals(1, itemList.showMoreChildren(2, 2, 5));
+        assertEquals(0, itemList.showMoreChildren(2, 3, 5));
+        assertRows(itemList, mA, mB, mC, "c0", "c1", "c2", mD);
+        assertEquals(3, itemList.collapseParent(2));
+    }
+
+    @Test
+    public void bulkExpandAndCollapse() {
+        ExpandableItemList itemList = createItemList(mParents);
+        assertEquals(6, itemList.expandAllParents());
+        assertRows(itemList, mA, "a0", "a1", mB, mC, "c0", "c1", "c2", mD, "d0");
+        assertEquals(0, itemList.expandAllParents());
+        assertEquals(6, itemList.collapseAllParents());
+        assertRows(itemList, mA, mB, mC, mD);
+
+        assertEquals(4, itemList.expandParents(Arrays.asList(mC, mD)));
+        assertRows(itemList, mA, mB, mC, "c0", "c1", "c2", mD, "d0");
+        assertEquals(Arrays.<Object>asList(mC, mD), itemList.getExpandedParents());
+    }
+
+    @Test
+    public void expandSameParentsMatchesByStableId() {
+        ExpandableItemList itemList = createItemList(mParents);
+        TestParent otherC = new TestParent("C'", 3, "x");
+        assertEquals(3, itemList.expandSameParents(Collections.singletonList(otherC)));
+        assertRows(itemList, mA, mB, mC, "c0", "c1", "c2", mD);
+    }
+
+    @Test
+    public void stableIdRoundTripSurvivesReordering() {
+        ExpandableItemList itemList = createItemList(mParents);
+        itemList.expandParent(0);
+        itemList.expandParent(4);
+        long[] stableIds = itemList.getExpandedStableIds();
+        assertArrayEquals(new long[]{1, 3}, stableIds);
+
+        List<ParentObject> reordered = new ArrayList<>(mParents);
+        Collections.reverse(reordered);
+        ExpandableItemList restored = createItemList(reordered);
+        assertEquals(5, restored.expandStableIds(stableIds));
+        assertRows(restored, mD, mC, "c0", "c1", "c2", mB, mA, "a0", "a1");
+    }
+
+    @Test
+    public void expandedStableIdsAreNullWithoutIds() {
+        ParentObject plain = new ParentObject() {
+            @Override
+            public List<? extends Object> getChildObjectList() {
+                return null;
+            }
+
+            @Override
+            public void setChildObjectList(List<? extends Object> childObjectList) { }
+        };
+        ExpandableItemList itemList = createItemList(Arrays.asList(plain, mA));
+        assertArrayEquals(new long[0], itemList.getExpandedStableIds());
+        itemList.expandParent(0);
+        assertNull(itemList.getExpandedStableIds());
+    }
+
+    @Test
+    public void parentBitsRoundTrip() {
+        ExpandableItemList itemList = createItemList(mParents);
+        itemList.expandParent(3);
+        itemList.expandParent(1);
+        long[] bits = itemList.getExpandedParentBits();
+        assertArrayEquals(new long[]{0xa}, bits);
+
+        ExpandableItemList restored = createItemList(mParents);
+        assertEquals(1, restored.expandParentBits(bits));
+        assertRows(restored, itemList.toArray());
+    }
+
+    @Test
+    public void parentBitsRoundTripPastOneWord() {
+        List<ParentObject> parents = new ArrayList<>();
+        for (int i = 0; i < 70; i++) {
+            parents.add(new TestParent("P" + i, i, "c" + i));
+        }
+        ExpandableItemList itemList = createItemList(parents);
+        itemList.expandParents(Arrays.asList(parents.get(0), parents.get(64), parents.get(69)));
+        long[] bits = itemList.getExpandedParentBits();
+        assertEquals(2, bits.length);
+
+        ExpandableItemList restored = createItemList(parents);
+        restored.expandParentBits(bits);
+        assertRows(restored, itemList.toArray());
+    }
+
+    @Test
+    public void insertAndRemoveParent() {
+        ExpandableItemList itemList = createItemList(mParents);
+        itemList.expandParent(0);
+        TestParent e = new TestParent("E", 5, "e0");
+        mParents.add(1, e);
+        assertEquals(3, itemList.insertParent(1, e));
+        assertRows(itemList, mA, "a0", "a1", e, mB, mC, mD);
+        assertFalse(itemList.isExpanded(3));
+
+        mParents.remove(0);
+        assertEquals(3, itemList.removeParent(0));
+        assertRows(itemList, e, mB, mC, mD);
+        assertEquals(3, itemList.getParentPosition(3));
+    }
+
+    @Test
+    public void changeParentKeepsChildrenOfSameObject() {
+        ExpandableItemList itemList = createItemList(mParents);
+        itemList.expandParent(0);
+        assertEquals(0, itemList.changeParent(0, mA));
+        assertRows(itemList, mA, "a0", "a1", mB, mC, mD);
+        assertTrue(itemList.isExpanded(0));
+    }
+
+    @Test
+    public void changeParentDropsChildrenOfReplacedObject() {
+        ExpandableItemList itemList = createItemList(mParents);
+        itemList.expandParent(0);
+        TestParent replacement = new TestParent("A'", 1, "x0");
+        mParents.set(0, replacement);
+        assertEquals(2, itemList.changeParent(0, replacement));
+        assertRows(itemList, replacement, mB, mC, mD);
+        assertFalse(itemList.isExpanded(0));
+        assertEquals(1, itemList.expandParent(0));
+        assertRows(itemList, replacement, "x0", mB, mC, mD);
+    }
+
+    @Test
+    public void insertRemoveAndChangeChild() {
+        ExpandableItemList itemList = createItemList(mParents);
+        itemList.expandParent(2);
+
+        mC.getChildren().add(1, "new");
+        assertEquals(4, itemList.insertChild(2, 1));
+        assertRows(itemList, mA, mB, mC, "c0", "new", "c1", "c2", mD);
+
+        mC.getChildren().remove(0);
+        assertEquals(1, itemList.removeChild(2, 0));
+        assertRows(itemList, mA, mB, mC, "new", "c1", "c2", mD);
+
+        mC.getChildren().set(2, "changed");
+        assertEquals(0, itemList.changeChild(2, 2));
+        assertRows(itemList, mA, mB, mC, "new", "c1", "changed", mD);
+        assertEquals(6, itemList.getParentPosition(3));
+    }
+
+    @Test
+    public void childNotificationsOfCollapsedParentAreIgnored() {
+        ExpandableItemList itemList = createItemList(mParents);
+        mA.getChildren().add("a2");
+        assertEquals(-1, itemList.insertChild(0, 2));
+        mA.getChildren().remove(0);
+        assertEquals(0, itemList.removeChild(0, 0));
+        assertEquals(0, itemList.changeChild(0, 0));
+        assertRows(itemList, mA, mB, mC, mD);
+        assertEquals(2, itemList.expandParent(0));
+        assertRows(itemList, mA, "a1", "a2", mB, mC, mD);
+    }
+}
@@ -0,0 +1,75 @@
+package com.bignerdranch.expandablerecyclerview.Model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class FlatPositionIndexTest {
+
+    @Test
+    public void prefixSumsOfInitialWeights() {
+        FlatPositionIndex index = new FlatPositionIndex(5, 1);
+        for (int i = 0; i <= 5; i++) {
+            assertEquals(i, index.getPrefixSum(i));
+        }
+        assertEquals(5, index.getTotal());
+    }
+
+    @Test
+    public void addUpdatesLaterPrefixSums() {
+        FlatPositionIndex index = new FlatPositionIndex(4, 1);
+        index.add(1, 3);
+        assertEquals(1, index.getPrefixSum(1));
+        assertEquals(5, index.getPrefixSum(2));
+        assertEquals(4, index.get(1));
+        assertEquals(7, index.getTotal());
+    }
+
+    @Test
+    public void findIndexReturnsOwningEntry() {
+        FlatPositionIndex index = new FlatPositionIndex(0, 1);
+        index.reset(new int[]{1, 4, 1, 2});
+        int[] expected = {0, 1, 1, 1, 1, 2, 3, 3};
+        for (int position = 0; position < expected.length; position++) {
+            assertEquals(expected[position], index.findIndex(position));
+        }
+        assertEquals(4, index.findIndex(8));
+    }
+
+    @Test
+    public void insertAndRemoveShiftEntries() {
+        FlatPositionIndex index = new FlatPositionIndex(0, 1);
+        index.reset(new int[]{1, 2, 3});
+        index.insert(1, 5);
+        assertEquals(4, index.size());
+        assertEquals(1, index.get(0));
+        assertEquals(5, index.get(1));
+        assertEquals(2, index.get(2));
+        assertEquals(3, index.get(3));
+
+        index.remove(0);
+        assertEquals(3, index.size());
+        assertEquals(0, index.getPrefixSum(0));
+        assertEquals(5, index.getPrefixSum(1));
+        assertEquals(10, index.getTotal());
+    }
+
+    @Test
+    public void matchesNaivePrefixSums() {
+        int size = 37;
+        int[] weights = new int[size];
+        FlatPositionIndex index = new FlatPositionIndex(size, 0);
+        for (int i = 0; i < size; i++) {
+            weights[i] = (i * 7) % 5 + 1;
+            index.add(i, weights[i]);
+        }
+        int sum = 0;
+        for (int i = 0; i < size; i++) {
+            assertEquals(sum, index.getPrefixSum(i));
+            for (int position = sum; position < sum + weights[i]; position++) {
+                assertEquals(i, index.findIndex(position));
+            }
+            sum += weights[i];
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.bignerdranch.expandablerecyclerview.Model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ItemListDiffTest {
+
+    /**
+     * Row with a stable id whose content may change.
+     */
+    private static class Row implements StableIdObject {
+
+        final long   mId;
+        final String mContent;
+
+        Row(long id, String content) {
+            mId = id;
+            mContent = content;
+        }
+
+        @Override
+        public long getStableId() {
+            return mId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Row && ((Row) o).mId == mId && ((Row) o).mContent.equals(mContent);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) mId;
+        }
+    }
+
+    /**
+     * Applies the dispatched updates to a copy of the old rows. Inserted rows are null until they
+     * are checked against the new rows.
+     */
+    private static class Replay implements ItemListDiff.Callback {
+
+        final List<Object>  mRows;
+        final List<Boolean> mChanged = new ArrayList<>();
+        int                 mOperationCount;
+
+        Replay(Object[] oldItems) {
+            mRows = new ArrayList<>(Arrays.asList(oldItems));
+            for (int i = 0; i < oldItems.length; i++) {
+                mChanged.add(false);
+            }
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            mOperationCount++;
+            for (int i = 0; i < count; i++) {
+                mRows.add(position, null);
+                mChanged.add(position, false);
+            }
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            mOperationCount++;
+            for (int i = 0; i < count; i++) {
+                mRows.remove(position);
+                mChanged.remove(position);
+            }
+        }
+
+        @Override
+        public void onChanged(int position, int count) {
+            mOperationCount++;
+            for (int i = 0; i < count; i++) {
+                assertTrue(mRows.get(position + i) != null);
+                mChanged.set(position + i, true);
+            }
+        }
+    }
+
+    private static Replay replay(Object[] oldItems, Object[] newItems) {
+        Replay replay = new Replay(oldItems);
+        ItemListDiff.calculate(oldItems, newItems).dispatchTo(replay);
+        assertEquals(newItems.length, replay.mRows.size());
+        for (int i = 0; i < newItems.length; i++) {
+            Object row = replay.mRows.get(i);
+            if (row != null) {
+                assertTrue(ItemListDiff.isSameItem(row, newItems[i]));
+                assertEquals(!row.equals(newItems[i]), replay.mChanged.get(i));
+            }
+        }
+        return replay;
+    }
+
+    @Test
+    public void identicalListsHaveNoUpdates() {
+        Object[] items = {"a", "b", "c"};
+        assertTrue(ItemListDiff.calculate(items, items.clone()).isEmpty());
+    }
+
+    @Test
+    public void insertionIsOneRange() {
+        Replay replay = replay(new Object[]{"a", "d"}, new Object[]{"a", "b", "c", "d"});
+        assertEquals(1, replay.mOperationCount);
+        assertNull(replay.mRows.get(1));
+        assertNull(replay.mRows.get(2));
+    }
+
+    @Test
+    public void removalIsOneRange() {
+        Replay replay = replay(new Object[]{"a", "b", "c", "d"}, new Object[]{"a", "d"});
+        assertEquals(1, replay.mOperationCount);
+    }
+
+    @Test
+    public void changedContentIsReportedForMatchedIds() {
+        Object[] oldItems = {new Row(1, "x"), new Row(2, "y"), new Row(3, "z")};
+        Object[] newItems = {new Row(1, "x"), new Row(2, "Y"), new Row(3, "z")};
+        Replay replay = replay(oldItems, newItems);
+        assertEquals(1, replay.mOperationCount);
+        assertTrue(replay.mChanged.get(1));
+        assertFalse(replay.mChanged.get(0));
+    }
+
+    @Test
+    public void mixedEditsReplayToNewList() {
+        replay(new Object[]{"a", "b", "c", "d", "e", "f"},
+               new Object[]{"b", "x", "d", "f", "y", "a"});
+        replay(new Object[0], new Object[]{"a", "b"});
+        replay(new Object[]{"a", "b"}, new Object[0]);
+    }
+
+    @Test
+    public void randomEditsReplayToNewList() {
+        Random random = new Random(42);
+        for (int iteration = 0; iteration < 200; iteration++) {
+            List<Object> oldItems = new ArrayList<>();
+            for (int i = 0; i < random.nextInt(40); i++) {
+                oldItems.add(new Row(i, "v0"));
+            }
+            List<Object> newItems = new ArrayList<>(oldItems);
+            for (int edit = random.nextInt(10); edit > 0; edit--) {
+                int operation = random.nextInt(3);
+                if (operation == 0 || newItems.isEmpty()) {
+                    newItems.add(random.nextInt(newItems.size() + 1), new Row(1000 + iteration * 10 + edit, "v0"));
+                } else if (operation == 1) {
+                    newItems.remove(random.nextInt(newItems.size()));
+                } else {
+                    int position = random.nextInt(newItems.size());
+                    newItems.set(position, new Row(((Row) newItems.get(position)).mId, "v1"));
+                }
+            }
+            replay(oldItems.toArray(), newItems.toArray());
+        }
+    }
+
+    @Test
+    public void distantListsFallBackToOneRemovalAndInsertion() {
+        int size = ItemListDiff.MAX_EDIT_DISTANCE + 10;
+        Object[] oldItems = new Object[size];
+        Object[] newItems = new Object[size];
+        for (int i = 0; i < size; i++) {
+            oldItems[i] = "old" + i;
+            newItems[i] = "new" + i;
+        }
+        Replay replay = replay(oldItems, newItems);
+        assertEquals(2, replay.mOperationCount);
+    }
+}
@@ -0,0 +1,146 @@
+package com.bignerdranch.expandablerecyclerview.Model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MaterializedItemListTest extends ExpandableItemListTestBase {
+
+    @Override
+    protected ExpandableItemList createItemList(List<ParentObject> parentItemList) {
+        return new MaterializedItemList(parentItemList);
+    }
+
+    /**
+     * A: a0, N(n0, n1), a2 and B: b0
+     */
+    private TestParent mN;
+
+    private List<ParentObject> createNestedParents() {
+        mN = new TestParent("N", 10, "n0", "n1");
+        mA = new TestParent("A", 1, "a0", mN, "a2");
+        mB = new TestParent("B", 2, "b0");
+        return Arrays.<ParentObject>asList(mA, mB);
+    }
+
+    @Test
+    public void nestedParentsExpandAtTheirDepth() {
+        ExpandableItemList itemList = createItemList(createNestedParents());
+        itemList.expandParent(0);
+        assertRows(itemList, mA, "a0", mN, "a2", mB);
+        assertTrue(itemList.isParent(2));
+        assertEquals(1, itemList.getDepth(2));
+
+        assertEquals(2, itemList.expandParent(2));
+        assertRows(itemList, mA, "a0", mN, "n0", "n1", "a2", mB);
+        assertEquals(2, itemList.getDepth(3));
+        assertEquals(5, itemList.getSubtreeEnd(2));
+        assertEquals(6, itemList.getSubtreeEnd(0));
+        assertEquals(5, itemList.getChildPosition(0, 2));
+        assertEquals(6, itemList.getParentPosition(1));
+        assertEquals(2, itemList.getParentRowCountBefore(6));
+    }
+
+    @Test
+    public void collapsingParentCollapsesNestedParents() {
+        ExpandableItemList itemList = createItemList(createNestedParents());
+        itemList.expandParent(0);
+        itemList.expandParent(2);
+        assertEquals(5, itemList.collapseParent(0));
+        assertRows(itemList, mA, mB);
+
+        itemList.expandParent(0);
+        assertRows(itemList, mA, "a0", mN, "a2", mB);
+        assertFalse(itemList.isExpanded(2));
+    }
+
+    @Test
+    public void bulkExpansionReachesNestedParents() {
+        ExpandableItemList itemList = createItemList(createNestedParents());
+        assertEquals(6, itemList.expandAllParents());
+        assertRows(itemList, mA, "a0", mN, "n0", "n1", "a2", mB, "b0");
+        assertEquals(6, itemList.collapseAllParents());
+        assertRows(itemList, mA, mB);
+
+        // N is only visible once A is expanded by the same call
+        itemList.expandParents(Arrays.asList(mA, mN));
+        assertRows(itemList, mA, "a0", mN, "n0", "n1", "a2", mB);
+        itemList.collapseAllParents();
+        itemList.expandParents(Collections.singletonList(mN));
+        assertRows(itemList, mA, mB);
+    }
+
+    @Test
+    public void restoreRoundTripsKeepNestedState() {
+        ExpandableItemList itemList = createItemList(createNestedParents());
+        itemList.expandParent(0);
+        itemList.expandParent(2);
+        long[] bits = itemList.getExpandedParentBits();
+        long[] stableIds = itemList.getExpandedStableIds();
+        assertArrayEquals(new long[]{1, 10}, stableIds);
+
+        ExpandableItemList fromBits = createItemList(Arrays.<ParentObject>asList(mA, mB));
+        fromBits.expandParentBits(bits);
+        assertRows(fromBits, itemList.toArray());
+
+        ExpandableItemList fromIds = createItemList(Arrays.<ParentObject>asList(mA, mB));
+        fromIds.expandStableIds(stableIds);
+        assertRows(fromIds, itemList.toArray());
+    }
+
+    @Test
+    public void childNotificationsAroundExpandedNestedParent() {
+        ExpandableItemList itemList = createItemList(createNestedParents());
+        itemList.expandParent(0);
+        itemList.expandParent(2);
+
+        mA.getChildren().add(3, "a3");
+        assertEquals(6, itemList.insertChild(0, 3));
+        assertRows(itemList, mA, "a0", mN, "n0", "n1", "a2", "a3", mB);
+
+        mA.getChildren().remove(1);
+        assertEquals(3, itemList.removeChild(0, 1));
+        assertRows(itemList, mA, "a0", "a2", "a3", mB);
+        assertEquals(4, itemList.getParentPosition(1));
+    }
+
+    @Test
+    public void changeChildReplacingExpandedNestedParentDropsSubtree() {
+        ExpandableItemList itemList = createItemList(createNestedParents());
+        itemList.expandParent(0);
+        itemList.expandParent(2);
+
+        mA.getChildren().set(1, "plain");
+        assertEquals(2, itemList.changeChild(0, 1));
+        assertRows(itemList, mA, "a0", "plain", "a2", mB);
+        assertFalse(itemList.isParent(2));
+        assertEquals(1, itemList.getParentRowCountBefore(4));
+        assertEquals(4, itemList.getParentPosition(1));
+    }
+
+    @Test
+    public void changeChildKeepsSubtreeOfSameObject() {
+        ExpandableItemList itemList = createItemList(createNestedParents());
+        itemList.expandParent(0);
+        itemList.expandParent(2);
+        assertEquals(0, itemList.changeChild(0, 1));
+        assertRows(itemList, mA, "a0", mN, "n0", "n1", "a2", mB);
+        assertTrue(itemList.isExpanded(2));
+    }
+
+    @Test
+    public void partialExpansionAppendsAfterExpandedNestedParent() {
+        ExpandableItemList itemList = createItemList(createNestedParents());
+        assertEquals(2, itemList.expandParent(0, 2));
+        itemList.expandParent(2);
+        assertEquals(1, itemList.showMoreChildren(0, 2, 10));
+        assertRows(itemList, mA, "a0", mN, "n0", "n1", "a2", mB);
+    }
+}
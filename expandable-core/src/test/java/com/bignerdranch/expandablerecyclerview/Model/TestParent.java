@@ -0,0 +1,46 @@
+package com.bignerdranch.expandablerecyclerview.Model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ParentObject with a stable id, compared by identity.
+ */
+class TestParent implements ParentObject, StableIdObject {
+
+    private final String           mName;
+    private final long             mStableId;
+    private List<? extends Object> mChildObjectList;
+
+    TestParent(String name, long stableId, Object... children) {
+        mName = name;
+        mStableId = stableId;
+        mChildObjectList = new ArrayList<>(Arrays.asList(children));
+    }
+
+    @Override
+    public List<? extends Object> getChildObjectList() {
+        return mChildObjectList;
+    }
+
+    @Override
+    public void setChildObjectList(List<? extends Object> childObjectList) {
+        mChildObjectList = childObjectList;
+    }
+
+    @SuppressWarnings("unchecked")
+    List<Object> getChildren() {
+        return (List<Object>) mChildObjectList;
+    }
+
+    @Override
+    public long getStableId() {
+        return mStableId;
+    }
+
+    @Override
+    public String toString() {
+        return mName;
+    }
+}
@@ -0,0 +1,67 @@
+package com.bignerdranch.expandablerecyclerview.Model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class VirtualItemListTest extends ExpandableItemListTestBase {
+
+    @Override
+    protected ExpandableItemList createItemList(List<ParentObject> parentItemList) {
+        return new VirtualItemList(parentItemList);
+    }
+
+    @Test
+    public void nestedParentsAreShownAsChildren() {
+        TestParent nested = new TestParent("N", 10, "n0");
+        TestParent parent = new TestParent("P", 1, nested, "p1");
+        ExpandableItemList itemList = createItemList(Arrays.<ParentObject>asList(parent));
+        assertEquals(2, itemList.expandParent(0));
+        assertRows(itemList, parent, nested, "p1");
+        assertFalse(itemList.isParent(1));
+        assertEquals(1, itemList.getDepth(1));
+    }
+
+    @Test
+    public void changeParentKeepsChildrenOfSameList() {
+        ExpandableItemList itemList = createItemList(mParents);
+        itemList.expandParent(0);
+        TestParent replacement = new TestParent("A'", 1);
+        replacement.setChildObjectList(mA.getChildObjectList());
+        mParents.set(0, replacement);
+        assertEquals(0, itemList.changeParent(0, replacement));
+        assertRows(itemList, replacement, "a0", "a1", mB, mC, mD);
+        assertTrue(itemList.isExpanded(0));
+    }
+
+    @Test
+    public void positionsOfLargeTree() {
+        List<ParentObject> parents = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Object[] children = new Object[i % 7];
+            for (int j = 0; j < children.length; j++) {
+                children[j] = i + "." + j;
+            }
+            parents.add(new TestParent("P" + i, i, children));
+        }
+        ExpandableItemList itemList = createItemList(parents);
+        ExpandableItemList reference = new MaterializedItemList(parents);
+        // expanding from the end keeps the positions of the parents before it
+        for (int position = 999; position >= 0; position -= 3) {
+            itemList.expandParent(position);
+            reference.expandParent(position);
+        }
+        assertRows(itemList, reference.toArray());
+        for (int position = 0; position < itemList.size(); position++) {
+            assertEquals(reference.isExpanded(position), itemList.isExpanded(position));
+            assertEquals(reference.getParentRowCountBefore(position),
+                         itemList.getParentRowCountBefore(position));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.bignerdranch.expandablerecyclerview.Adapter;
+
+/**
+ * Interface callback allowing objects to register themselves to be notified of how long the
+ * adapter's operations take. Durations are in nanoseconds and cover the adapter's own work,
+ * including dispatching notifications, but not other listeners.
+ * <p/>
+ * No timing is done while no metrics listener is set.
+ */
+public interface AdapterMetricsListener {
+
+    /**
+     * Called after a ParentObject was expanded by a click or expandParent.
+     *
+     * @param position      the flat position of the parent
+     * @param insertedCount the number of rows inserted
+     * @param durationNanos
+     */
+    void onParentExpanded(int position, int insertedCount, long durationNanos);
+
+    /**
+     * Called after a ParentObject was collapsed by a click or collapseParent.
+     *
+     * @param position     the flat position of the parent
+     * @param removedCount the number of rows removed
+     * @param durationNanos
+     */
+    void onParentCollapsed(int position, int removedCount, long durationNanos);
+
+    /**
+     * Called after expandAllParents or expandParents.
+     *
+     * @param insertedCount the number of rows inserted
+     * @param durationNanos
+     */
+    void onParentsExpanded(int insertedCount, long durationNanos);
+
+    /**
+     * Called after collapseAllParents.
+     *
+     * @param removedCount the number of rows removed
+     * @param durationNanos
+     */
+    void onParentsCollapsed(int removedCount, long durationNanos);
+
+    /**
+     * Called after expanded states were restored by onRestoreInstanceState.
+     *
+     * @param insertedCount the number of rows inserted
+     * @param durationNanos
+     */
+    void onStateRestored(int insertedCount, long durationNanos);
+
+    /**
+     * Called after a ViewHolder was created.
+     *
+     * @param viewType the view type returned by getParentViewType or getChildViewType
+     * @param durationNanos
+     */
+    void onViewHolderCreated(int viewType, long durationNanos);
+
+    /**
+     * Called after a ViewHolder was bound, including binds that only apply an expansion
+     * payload.
+     *
+     * @param viewType the view type returned by getParentViewType or getChildViewType
+     * @param durationNanos
+     */
+    void onViewHolderBound(int viewType, long durationNanos);
+}
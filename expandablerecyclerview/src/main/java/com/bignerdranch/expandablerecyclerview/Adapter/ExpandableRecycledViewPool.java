@@ -0,0 +1,42 @@
+package com.bignerdranch.expandablerecyclerview.Adapter;
+
+import android.support.v7.widget.RecyclerView;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * RecycledViewPool shared by several ExpandableRecyclerAdapters, for example the adapters of
+ * pager pages or of lists nested in other lists.
+ * <p/>
+ * Each adapter is given a view type namespace by a key, by default its class. Adapters with the
+ * same key reuse each other's ViewHolders; adapters with different keys never receive each
+ * other's ViewHolders even though their view types overlap.
+ */
+public class ExpandableRecycledViewPool extends RecyclerView.RecycledViewPool {
+
+    static final int NAMESPACE_SHIFT     = 16;
+    static final int LOCAL_VIEW_TYPE_MASK = (1 << NAMESPACE_SHIFT) - 1;
+    static final int MAX_NAMESPACE_COUNT = 1 << (31 - NAMESPACE_SHIFT);
+
+    private final Map<Object, Integer> mNamespaces = new HashMap<>();
+
+    /**
+     * Returns the namespace of a key, assigning the next free one the first time the key is seen.
+     *
+     * @param namespaceKey
+     * @return the namespace, shifted into the high bits of a view type
+     * @throws IllegalStateException if every namespace is taken
+     */
+    int obtainNamespace(Object namespaceKey) {
+        Integer namespace = mNamespaces.get(namespaceKey);
+        if (namespace == null) {
+            if (mNamespaces.size() >= MAX_NAMESPACE_COUNT) {
+                throw new IllegalStateException("Too many view type namespaces");
+            }
+            namespace = mNamespaces.size() << NAMESPACE_SHIFT;
+            mNamespaces.put(namespaceKey, namespace);
+        }
+        return namespace;
+    }
+}
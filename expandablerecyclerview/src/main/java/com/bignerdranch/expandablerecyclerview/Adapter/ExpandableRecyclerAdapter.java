@@ -1,17 +1,41 @@
 package com.bignerdranch.expandablerecyclerview.Adapter;
 
+import android.content.Context;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.support.v4.view.ViewCompat;
 import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.LayoutInflater;
 import android.view.ViewGroup;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 import com.bignerdranch.expandablerecyclerview.ClickListeners.ExpandCollapseListener;
 import com.bignerdranch.expandablerecyclerview.ClickListeners.ParentItemClickListener;
+import com.bignerdranch.expandablerecyclerview.Model.ChildListCache;
+import com.bignerdranch.expandablerecyclerview.Model.ChildListLoader;
+import com.bignerdranch.expandablerecyclerview.Model.ChildPlaceholder;
+import com.bignerdranch.expandablerecyclerview.Model.ExpandableItemList;
+import com.bignerdranch.expandablerecyclerview.Model.ItemListDiff;
+import com.bignerdranch.expandablerecyclerview.Model.MaterializedItemList;
 import com.bignerdranch.expandablerecyclerview.Model.ParentObject;
-import com.bignerdranch.expandablerecyclerview.Model.ParentWrapper;
+import com.bignerdranch.expandablerecyclerview.Model.StableIdObject;
+import com.bignerdranch.expandablerecyclerview.Model.VirtualItemList;
 import com.bignerdranch.expandablerecyclerview.ViewHolder.ChildViewHolder;
+import com.bignerdranch.expandablerecyclerview.ViewHolder.ParentBindingStrategy;
 import com.bignerdranch.expandablerecyclerview.ViewHolder.ParentViewHolder;
 
 /**
@@ -33,20 +57,88 @@ public abstract class ExpandableRecyclerAdapter<PVH extends ParentViewHolder, CV
     public static final long DEFAULT_ROTATE_DURATION_MS        = 200l;
     public static final long CUSTOM_ANIMATION_DURATION_NOT_SET = -1l;
 
-    private static final String EXPANDED_POSITION_LIST = "ExpandableRecyclerAdapter.ExpandedPositionList";
-    private static final int    TYPE_PARENT            = 0;
-    private static final int    TYPE_CHILD             = 1;
+    /**
+     * Payload of the change notification dispatched for a parent whose expanded state changed.
+     * Binds carrying only this payload update the ParentViewHolder's expanded state without
+     * calling onBindParentViewHolder.
+     * <p/>
+     * The payload only reaches the existing ViewHolder if the ItemAnimator does not run change
+     * animations. With the default animator, call
+     * {@code recyclerView.getItemAnimator().setSupportsChangeAnimations(false)}; otherwise every
+     * toggle cross-fades the parent into a new, fully rebound ViewHolder and the indicator
+     * animation runs on the one fading out.
+     */
+    public static final Object EXPANSION_PAYLOAD = new Object();
+
+    private static final String EXPANDED_STABLE_IDS    = "ExpandableRecyclerAdapter.ExpandedStableIds";
+    private static final String EXPANDED_PARENT_BITS   = "ExpandableRecyclerAdapter.ExpandedParentBits";
+    private static final int    TYPE_PARENT            = ExpandableItemList.TYPE_PARENT;
+    private static final int    TYPE_CHILD             = ExpandableItemList.TYPE_CHILD;
+    private static final int    TYPE_MASK              = 1;
+    private static final int    VIEW_TYPE_SHIFT        = 1;
+    private static final int    MAX_USER_VIEW_TYPE     =
+            ExpandableRecycledViewPool.LOCAL_VIEW_TYPE_MASK >> VIEW_TYPE_SHIFT;
+    private static final long   WARM_UP_BUDGET_NANOS   = 4000000l;
 
-    protected List<Object>       mItemList;
+    protected ExpandableItemList mItemList;
     protected List<ParentObject> mParentItemList;
 
-    private ExpandableRecyclerAdapterHelper mHelper;
-    private ExpandCollapseListener          mListener;
+    private static Executor sDefaultDiffExecutor;
+    private static Executor sDefaultInflationExecutor;
+
+    private ExpandCollapseListener mListener;
+    private AdapterMetricsListener mMetricsListener;
+    private Executor               mDiffExecutor;
+    private Handler                mMainHandler;
+    private int                    mSubmitGeneration;
+    private ChildListLoader        mChildListLoader;
+    private ChildListCache         mChildListCache;
+    private Executor               mChildLoadExecutor;
+
+    private final Map<ParentObject, ChildListLoad> mPendingChildLoads = new IdentityHashMap<>();
+    private final Set<ParentObject>                mLoadedParents     =
+            Collections.newSetFromMap(new IdentityHashMap<ParentObject, Boolean>());
+
+    private int  mIncrementalExpansionThreshold;
+    private long mExpansionFrameBudgetNanos;
+
+    private final Map<ParentObject, IncrementalExpansion> mPendingExpansions = new IdentityHashMap<>();
+
+    private final ItemListDiff.Callback mDiffCallback = new ItemListDiff.Callback() {
+        @Override
+        public void onInserted(int position, int count) {
+            notifyItemRangeInserted(position, count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            notifyItemRangeRemoved(position, count);
+        }
+
+        @Override
+        public void onChanged(int position, int count) {
+            notifyItemRangeChanged(position, count);
+        }
+    };
 
     private boolean mParentAndIconClickable      = false;
     private int     mCustomParentAnimationViewId = CUSTOM_ANIMATION_VIEW_NOT_SET;
     private long    mAnimationDuration           = CUSTOM_ANIMATION_DURATION_NOT_SET;
 
+    private ParentBindingStrategy mBindingStrategy = ParentBindingStrategy.forItemClick();
+
+    private boolean                     mHasUserViewTypes;
+    private ExpandableRecycledViewPool  mSharedRecycledViewPool;
+    private int                         mViewTypeNamespace;
+    private final Map<Integer, Integer> mRecycledViewPoolSizes = new HashMap<>();
+    private final Map<Integer, Integer> mChildWarmUpCounts = new HashMap<>();
+    private RecyclerView                mRecyclerView;
+    private ViewHolderWarmUp            mViewHolderWarmUp;
+
+    private Executor                           mInflationExecutor;
+    private final Map<Integer, AsyncInflation> mAsyncInflations = new HashMap<>();
+    private LayoutInflater                     mInflationLayoutInflater;
+
     /**
      * Public default constructor for the base ExpandableRecyclerView. It is expected you will setup
      * the list after construction by calling {@link #setupList(List)}. Also, if you do not call
@@ -101,9 +193,166 @@ public abstract class ExpandableRecyclerAdapter<PVH extends ParentViewHolder, CV
      * @param parentItemList
      */
     public void setupList(List<ParentObject> parentItemList) {
+        mSubmitGeneration++;
+        releaseRemovedParents(parentItemList);
+        mParentItemList = parentItemList;
+        mItemList = new MaterializedItemList(parentItemList);
+    }
+
+    /**
+     * Allows for setting up the list after construction of this adapter without ever copying
+     * child rows. Expanding and collapsing is O(log n) regardless of the number of children and
+     * memory use is proportional to the number of parents, which suits very large trees.
+     * <p/>
+     * Only two levels are supported: children that implement ParentObject are bound as children
+     * and cannot be expanded.
+     *
+     * @param parentItemList
+     */
+    public void setupVirtualList(List<ParentObject> parentItemList) {
+        mSubmitGeneration++;
+        releaseRemovedParents(parentItemList);
         mParentItemList = parentItemList;
-        mItemList = generateObjectList(parentItemList);
-        mHelper = new ExpandableRecyclerAdapterHelper(mItemList);
+        mItemList = new VirtualItemList(parentItemList);
+    }
+
+    /**
+     * Replaces the list of ParentObjects without resetting the adapter. The new list is
+     * flattened and diffed against the current rows on a worker thread, keeping expanded the
+     * parents that are expanded now (matched by stable id if they implement StableIdObject and
+     * by equals otherwise). The minimal range insertions, removals and changes are then
+     * dispatched on the main thread. If a ChildListLoader is set, the children of kept expanded
+     * parents whose child list is null are then loaded as when they are clicked.
+     * <p/>
+     * Pass a new list rather than mutating the current one, and do not modify the new list or
+     * its children's lists until it has been applied. If a later list is submitted first, this
+     * one is dropped. If the rows are expanded or collapsed while the diff is being calculated,
+     * the new list is applied with notifyDataSetChanged instead.
+     *
+     * @param parentItemList
+     */
+    public void submitParentList(final List<ParentObject> parentItemList) {
+        final int generation = ++mSubmitGeneration;
+        final ExpandableItemList oldItemList = mItemList;
+        final int modificationCount = oldItemList.getModificationCount();
+        final Object[] oldItems = oldItemList.toArray();
+        final List<Object> expandedParents = oldItemList.getExpandedParents();
+        final boolean virtual = oldItemList instanceof VirtualItemList;
+        final Handler mainHandler = getMainHandler();
+
+        getDiffExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final ExpandableItemList newItemList = virtual
+                        ? new VirtualItemList(parentItemList)
+                        : new MaterializedItemList(parentItemList);
+                newItemList.expandSameParents(expandedParents);
+                final ItemListDiff diff = ItemListDiff.calculate(oldItems, newItemList.toArray());
+
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mSubmitGeneration) {
+                            return;
+                        }
+                        boolean unchanged = mItemList == oldItemList
+                                && oldItemList.getModificationCount() == modificationCount;
+                        releaseRemovedParents(parentItemList);
+                        mParentItemList = parentItemList;
+                        mItemList = newItemList;
+                        if (unchanged) {
+                            diff.dispatchTo(mDiffCallback);
+                            loadMissingChildLists(true);
+                        } else {
+                            loadMissingChildLists(false);
+                            notifyDataSetChanged();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Sets the executor used to calculate diffs in {@link #submitParentList(List)}. By default a
+     * single background thread shared by all adapters is used.
+     *
+     * @param diffExecutor
+     */
+    public void setDiffExecutor(Executor diffExecutor) {
+        mDiffExecutor = diffExecutor;
+    }
+
+    private Executor getDiffExecutor() {
+        if (mDiffExecutor != null) {
+            return mDiffExecutor;
+        }
+        if (sDefaultDiffExecutor == null) {
+            sDefaultDiffExecutor = Executors.newSingleThreadExecutor();
+        }
+        return sDefaultDiffExecutor;
+    }
+
+    /**
+     * Sets the loader used to fetch the children of ParentObjects whose getChildObjectList()
+     * returns null when they are expanded by a click, by onRestoreInstanceState or by
+     * submitParentList. Placeholder rows are shown until the children are loaded.
+     * expandAllParents and expandParents do not load children; such parents are expanded with
+     * no children.
+     *
+     * @param childListLoader the loader, or null to disable lazy loading
+     */
+    public void setChildListLoader(ChildListLoader childListLoader) {
+        mChildListLoader = childListLoader;
+    }
+
+    /**
+     * Sets the cache that keeps the child lists of collapsed parents loaded by the
+     * ChildListLoader. Collapsing such a parent moves its list into the cache and expanding it
+     * takes the list back without loading. Lists evicted from the cache are loaded again. Child
+     * lists the app set on its parents itself are never moved into the cache.
+     *
+     * @param childListCache the cache, or null to keep every loaded list on its parent
+     */
+    public void setChildListCache(ChildListCache childListCache) {
+        mChildListCache = childListCache;
+    }
+
+    /**
+     * Sets the executor used to run the ChildListLoader. By default the diff executor is used.
+     *
+     * @param childLoadExecutor
+     */
+    public void setChildLoadExecutor(Executor childLoadExecutor) {
+        mChildLoadExecutor = childLoadExecutor;
+    }
+
+    /**
+     * Expands parents with more than {@code minChildCount} children over several frames when
+     * they are clicked. About a screenful of children is inserted right away and the rest are
+     * inserted in chunks, doing at most {@code frameBudgetMs} of work per frame. Collapsing the
+     * parent before all its children are inserted cancels the remaining chunks.
+     * <p/>
+     * Do not call the notifyChild methods for a parent while its children are being inserted.
+     *
+     * @param minChildCount the child count above which parents are expanded over several frames,
+     *                      or 0 to always insert every child at once
+     * @param frameBudgetMs the work done per frame, greater than 0
+     * @throws IllegalArgumentException if {@code frameBudgetMs} is not greater than 0
+     */
+    public void setIncrementalExpansion(int minChildCount, long frameBudgetMs) {
+        if (frameBudgetMs <= 0) {
+            throw new IllegalArgumentException("The frame budget must be greater than 0");
+        }
+        mIncrementalExpansionThreshold = minChildCount;
+        mExpansionFrameBudgetNanos = frameBudgetMs * 1000000l;
+    }
+
+    private Handler getMainHandler() {
+        if (mMainHandler == null) {
+            mMainHandler = new Handler(Looper.getMainLooper());
+        }
+        return mMainHandler;
     }
 
     /**
@@ -115,6 +364,7 @@ public abstract class ExpandableRecyclerAdapter<PVH extends ParentViewHolder, CV
     public void setupAnimation(int customParentAnimationViewId, long animationDuration) {
         mCustomParentAnimationViewId = customParentAnimationViewId;
         mAnimationDuration = animationDuration;
+        updateBindingStrategy();
     }
 
     /**
@@ -130,14 +380,61 @@ public abstract class ExpandableRecyclerAdapter<PVH extends ParentViewHolder, CV
      */
     @Override
     public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup viewGroup, int viewType) {
-        if (viewType == TYPE_PARENT) {
-            PVH pvh = onCreateParentViewHolder(viewGroup);
+        if (mMetricsListener == null) {
+            return createTypedViewHolder(viewGroup, viewType);
+        }
+        long startNanos = System.nanoTime();
+        RecyclerView.ViewHolder holder = createTypedViewHolder(viewGroup, viewType);
+        mMetricsListener.onViewHolderCreated(getUserViewType(viewType), System.nanoTime() - startNanos);
+        return holder;
+    }
+
+    private RecyclerView.ViewHolder createTypedViewHolder(ViewGroup viewGroup, int viewType) {
+        if (viewType < 0) {
+            throw new IllegalStateException("Incorrect ViewType found");
+        }
+        RecyclerView.ViewHolder holder = takeInflatedViewHolder(viewType);
+        if (holder == null) {
+            holder = createUserViewHolder(viewGroup, viewType);
+        }
+        if (isParentViewType(viewType)) {
+            PVH pvh = (PVH) holder;
             pvh.setParentItemClickListener(this);
-            return pvh;
-        } else if (viewType == TYPE_CHILD) {
-            return onCreateChildViewHolder(viewGroup);
+            mBindingStrategy.apply(pvh);
+        }
+        return holder;
+    }
+
+    /**
+     * Calls the user's onCreateParentViewHolder or onCreateChildViewHolder for the view type.
+     *
+     * @param viewGroup
+     * @param viewType
+     * @return the ViewHolder, without the adapter's click handling set up
+     */
+    private RecyclerView.ViewHolder createUserViewHolder(ViewGroup viewGroup, int viewType) {
+        if (isParentViewType(viewType)) {
+            return onCreateParentViewHolder(viewGroup, getUserViewType(viewType));
         } else {
-            throw new IllegalStateException("Incorrect ViewType found");
+            return onCreateChildViewHolder(viewGroup, getUserViewType(viewType));
+        }
+    }
+
+    /**
+     * Calls the user's onCreateParentViewHolder or onCreateChildViewHolder overload for view
+     * types inflated asynchronously. Called on the inflation thread.
+     *
+     * @param viewGroup
+     * @param viewType
+     * @param inflater the LayoutInflater owned by the inflation thread
+     * @return the ViewHolder, without the adapter's click handling set up
+     */
+    private RecyclerView.ViewHolder createAsyncViewHolder(ViewGroup viewGroup, int viewType,
+                                                          LayoutInflater inflater) {
+        if (isParentViewType(viewType)) {
+            return onCreateParentViewHolder(viewGroup, getUserViewType(viewType), inflater);
+        } else {
+            return onCreateChildViewHolder(viewGroup, getUserViewType(viewType), inflater);
         }
     }
 
@@ -150,49 +447,186 @@ public abstract class ExpandableRecyclerAdapter<PVH extends ParentViewHolder, CV
      * <p/>
      * If the item is a ParentObject, setting the ParentViewHolder's animation settings are then handled
      * here.
+     * <p/>
+     * The holder's view type, resolved from the item list's type table when it was created, is
+     * used to dispatch, so no type checks are done on the item itself.
      *
      * @param holder
      * @param position
-     * @throws IllegalStateException if the item in the list is neither a ParentObject or ChildObject
      */
     @Override
     public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
-        if (mHelper.getHelperItemAtPosition(position) instanceof ParentWrapper) {
+        if (mMetricsListener == null) {
+            bindTypedViewHolder(holder, position);
+            return;
+        }
+        long startNanos = System.nanoTime();
+        bindTypedViewHolder(holder, position);
+        mMetricsListener.onViewHolderBound(getUserViewType(holder.getItemViewType()),
+                System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Binds with payloads. If every payload is {@link #EXPANSION_PAYLOAD} or a
+     * {@link ParentBindingStrategy}, a ParentViewHolder only gets the current binding strategy
+     * applied and its expanded state updated, and a ChildViewHolder is left as is. Otherwise the
+     * ViewHolder is fully bound.
+     * <p/>
+     * Payloads are only delivered when the RecyclerView rebinds the same ViewHolder, which an
+     * ItemAnimator that runs change animations may not do.
+     *
+     * @param holder
+     * @param position
+     * @param payloads
+     */
+    @Override
+    public void onBindViewHolder(RecyclerView.ViewHolder holder, int position, List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        for (int i = 0; i < payloads.size(); i++) {
+            Object payload = payloads.get(i);
+            if (payload != EXPANSION_PAYLOAD && !(payload instanceof ParentBindingStrategy)) {
+                onBindViewHolder(holder, position);
+                return;
+            }
+        }
+        if (mMetricsListener == null) {
+            bindExpansionPayload(holder, position);
+            return;
+        }
+        long startNanos = System.nanoTime();
+        bindExpansionPayload(holder, position);
+        mMetricsListener.onViewHolderBound(getUserViewType(holder.getItemViewType()),
+                System.nanoTime() - startNanos);
+    }
+
+    private void bindExpansionPayload(RecyclerView.ViewHolder holder, int position) {
+        if (isParentViewType(holder.getItemViewType())) {
             PVH parentViewHolder = (PVH) holder;
+            mBindingStrategy.apply(parentViewHolder);
+            parentViewHolder.setExpanded(mItemList.isExpanded(position));
+        }
+    }
 
-            if (mParentAndIconClickable) {
-                if (mCustomParentAnimationViewId != CUSTOM_ANIMATION_VIEW_NOT_SET
-                        && mAnimationDuration != CUSTOM_ANIMATION_DURATION_NOT_SET) {
-                    parentViewHolder.setCustomClickableViewAndItem(mCustomParentAnimationViewId);
-                    parentViewHolder.setAnimationDuration(mAnimationDuration);
-                } else if (mCustomParentAnimationViewId != CUSTOM_ANIMATION_VIEW_NOT_SET) {
-                    parentViewHolder.setCustomClickableViewAndItem(mCustomParentAnimationViewId);
-                    parentViewHolder.cancelAnimation();
-                } else {
-                    parentViewHolder.setMainItemClickToExpand();
-                }
-            } else {
-                if (mCustomParentAnimationViewId != CUSTOM_ANIMATION_VIEW_NOT_SET
-                        && mAnimationDuration != CUSTOM_ANIMATION_DURATION_NOT_SET) {
-                    parentViewHolder.setCustomClickableViewOnly(mCustomParentAnimationViewId);
-                    parentViewHolder.setAnimationDuration(mAnimationDuration);
-                } else if (mCustomParentAnimationViewId != CUSTOM_ANIMATION_VIEW_NOT_SET) {
-                    parentViewHolder.setCustomClickableViewOnly(mCustomParentAnimationViewId);
-                    parentViewHolder.cancelAnimation();
-                } else {
-                    parentViewHolder.setMainItemClickToExpand();
-                }
+    private void bindTypedViewHolder(RecyclerView.ViewHolder holder, int position) {
+        Object item = mItemList.get(position);
+        if (isParentViewType(holder.getItemViewType())) {
+            PVH parentViewHolder = (PVH) holder;
+            if (parentViewHolder.getParentItemClickListener() != this) {
+                // created by another adapter sharing the RecycledViewPool
+                parentViewHolder.setParentItemClickListener(this);
             }
 
-            parentViewHolder.setExpanded(((ParentWrapper) mHelper.getHelperItemAtPosition(position)).isExpanded());
-            onBindParentViewHolder(parentViewHolder, position, mItemList.get(position));
-        } else if (mItemList.get(position) == null) {
-            throw new IllegalStateException("Incorrect ViewHolder found");
+            mBindingStrategy.apply(parentViewHolder);
+            parentViewHolder.setExpanded(mItemList.isExpanded(position));
+            onBindParentViewHolder(parentViewHolder, position, item);
+        } else {
+            onBindChildViewHolder((CVH) holder, position, item);
+        }
+    }
+
+    /**
+     * Compiles the clickable view and animation settings into a new ParentBindingStrategy and, if
+     * it differs from the current one, dispatches it as a change payload for the parent rows, so
+     * existing ParentViewHolders apply it without being fully rebound.
+     */
+    private void updateBindingStrategy() {
+        ParentBindingStrategy bindingStrategy;
+        if (mCustomParentAnimationViewId == CUSTOM_ANIMATION_VIEW_NOT_SET) {
+            bindingStrategy = ParentBindingStrategy.forItemClick();
         } else {
-            onBindChildViewHolder((CVH) holder, position, mItemList.get(position));
+            bindingStrategy = ParentBindingStrategy.forClickableView(mCustomParentAnimationViewId,
+                                                                     mParentAndIconClickable,
+                                                                     mAnimationDuration);
+        }
+        if (bindingStrategy.equals(mBindingStrategy)) {
+            return;
+        }
+        mBindingStrategy = bindingStrategy;
+        if (mItemList == null) {
+            return;
+        }
+
+        // one range notification per run of consecutive parent rows
+        int size = mItemList.size();
+        int runStart = -1;
+        for (int i = 0; i <= size; i++) {
+            boolean parent = i < size && mItemList.isParent(i);
+            if (parent && runStart < 0) {
+                runStart = i;
+            } else if (!parent && runStart >= 0) {
+                notifyItemRangeChanged(runStart, i - runStart, mBindingStrategy);
+                runStart = -1;
+            }
         }
     }
 
+    /**
+     * Creates the Parent ViewHolder for a parent view type returned by
+     * {@link #getParentViewType(int, Object)}. By default calls
+     * {@link #onCreateParentViewHolder(ViewGroup)}.
+     *
+     * @param parentViewGroup
+     * @param viewType the user view type, 0 unless parent view types are registered
+     * @return ParentViewHolder that the user must create and inflate.
+     */
+    public PVH onCreateParentViewHolder(ViewGroup parentViewGroup, int viewType) {
+        return onCreateParentViewHolder(parentViewGroup);
+    }
+
+    /**
+     * Creates the Child ViewHolder for a child view type returned by
+     * {@link #getChildViewType(int, Object)}. By default calls
+     * {@link #onCreateChildViewHolder(ViewGroup)}.
+     *
+     * @param childViewGroup
+     * @param viewType the user view type, 0 unless child view types are registered
+     * @return ChildViewHolder that the user must create and inflate.
+     */
+    public CVH onCreateChildViewHolder(ViewGroup childViewGroup, int viewType) {
+        return onCreateChildViewHolder(childViewGroup);
+    }
+
+    /**
+     * Creates the Parent ViewHolder for a parent view type inflated asynchronously, see
+     * {@link #setParentAsyncInflationCount(int, int)}. Called on the inflation thread, which owns
+     * {@code inflater}; views must be inflated with it rather than with
+     * {@code LayoutInflater.from(context)}, which is shared with the main thread.
+     * <p/>
+     * By default calls {@link #onCreateParentViewHolder(ViewGroup, int)}, which must then be
+     * safe to call off the main thread.
+     *
+     * @param parentViewGroup
+     * @param viewType the user view type, 0 unless parent view types are registered
+     * @param inflater a LayoutInflater only used by the inflation thread
+     * @return ParentViewHolder that the user must create and inflate.
+     */
+    public PVH onCreateParentViewHolder(ViewGroup parentViewGroup, int viewType,
+                                        LayoutInflater inflater) {
+        return onCreateParentViewHolder(parentViewGroup, viewType);
+    }
+
+    /**
+     * Creates the Child ViewHolder for a child view type inflated asynchronously, see
+     * {@link #setChildAsyncInflationCount(int, int)}. Called on the inflation thread, which owns
+     * {@code inflater}; views must be inflated with it rather than with
+     * {@code LayoutInflater.from(context)}, which is shared with the main thread.
+     * <p/>
+     * By default calls {@link #onCreateChildViewHolder(ViewGroup, int)}, which must then be
+     * safe to call off the main thread.
+     *
+     * @param childViewGroup
+     * @param viewType the user view type, 0 unless child view types are registered
+     * @param inflater a LayoutInflater only used by the inflation thread
+     * @return ChildViewHolder that the user must create and inflate.
+     */
+    public CVH onCreateChildViewHolder(ViewGroup childViewGroup, int viewType,
+                                       LayoutInflater inflater) {
+        return onCreateChildViewHolder(childViewGroup, viewType);
+    }
+
     /**
      * Creates the Parent ViewHolder. Called from onCreateViewHolder when the item is a ParenObject.
      *
@@ -238,277 +672,1334 @@ public abstract class ExpandableRecyclerAdapter<PVH extends ParentViewHolder, CV
     }
 
     /**
-     * Returns the type of view that the item at the given position is.
+     * Returns the stable id of the item at the given position if it implements
+     * {@link StableIdObject}. Call setHasStableIds(true) if every parent and child implements it.
+     * Placeholder rows shown while children load have ids of their own.
      *
      * @param position
-     * @return TYPE_PARENT (0) for ParentObjects and TYPE_CHILD (1) for ChildObjects
-     * @throws IllegalStateException if the item at the given position in the list is null
+     * @return the item's stable id, or RecyclerView.NO_ID if it has none
      */
     @Override
-    public int getItemViewType(int position) {
-        if (mItemList.get(position) instanceof ParentObject) {
-            return TYPE_PARENT;
-        } else if (mItemList.get(position) == null) {
-            throw new IllegalStateException("Null object added");
-        } else {
-            return TYPE_CHILD;
+    public long getItemId(int position) {
+        Object item = mItemList.get(position);
+        if (item instanceof StableIdObject) {
+            return ((StableIdObject) item).getStableId();
         }
+        return RecyclerView.NO_ID;
     }
 
     /**
-     * On click listener implementation for the ParentObject. This is called from ParentViewHolder.
-     * See OnClick in ParentViewHolder
+     * Returns the type of view that the item at the given position is. Unless user view types
+     * are registered, this is a single read of the item list's type table.
+     * <p/>
+     * The low bit holds TYPE_PARENT (0) or TYPE_CHILD (1), the bits above it the user view type
+     * and, with a shared pool, the high bits the view type namespace; see
+     * {@link #isParentViewType(int)} and {@link #getUserViewType(int)}.
      *
      * @param position
+     * @return the encoded view type of the item
+     * @throws IllegalArgumentException if getParentViewType or getChildViewType returns a view
+     *                                  type a registered view type could not have
      */
     @Override
-    public void onParentItemClickListener(int position) {
-        if (mItemList.get(position) instanceof ParentObject) {
-            ParentObject parentObject = (ParentObject) mItemList.get(position);
-            toggleParentExpansion(parentObject, position);
+    public int getItemViewType(int position) {
+        int type = mItemList.getViewType(position);
+        if (!mHasUserViewTypes) {
+            return mViewTypeNamespace | type;
         }
+        Object item = mItemList.get(position);
+        int userViewType = type == TYPE_PARENT
+                ? getParentViewType(position, item)
+                : getChildViewType(position, item);
+        checkUserViewType(userViewType);
+        return mViewTypeNamespace | (userViewType << VIEW_TYPE_SHIFT) | type;
     }
 
     /**
-     * Setter for the Default rotation duration (200 MS)
+     * Returns the user view type of a parent. Only called once a parent or child view type has
+     * been registered.
+     *
+     * @param position
+     * @param parentObject
+     * @return a view type of at least 0 passed to onCreateParentViewHolder
      */
-    public void setParentClickableViewAnimationDefaultDuration() {
-        mAnimationDuration = DEFAULT_ROTATE_DURATION_MS;
+    public int getParentViewType(int position, Object parentObject) {
+        return 0;
     }
 
     /**
-     * Setter for a custom rotation animation duration in MS
+     * Returns the user view type of a child. Only called once a parent or child view type has
+     * been registered.
      *
-     * @param animationDuration in MS
+     * @param position
+     * @param childObject
+     * @return a view type of at least 0 passed to onCreateChildViewHolder
      */
-    public void setParentClickableViewAnimationDuration(long animationDuration) {
-        mAnimationDuration = animationDuration;
+    public int getChildViewType(int position, Object childObject) {
+        return 0;
     }
 
     /**
-     * Setter for a custom clickable view to expand or collapse the item. This should be passed
-     * as a reference to the View's R.id
+     * Registers a view type returned by {@link #getParentViewType(int, Object)}, enabling user
+     * view types. Call before setting the adapter on the RecyclerView.
      *
-     * @param customParentAnimationViewId
+     * @param viewType         the user view type, at least 0
+     * @param maxRecycledViews the number of ViewHolders of this type the RecycledViewPool keeps,
+     *                         or a negative value to keep the pool's default
      */
-    public void setCustomParentAnimationViewId(int customParentAnimationViewId) {
-        mCustomParentAnimationViewId = customParentAnimationViewId;
+    public void registerParentViewType(int viewType, int maxRecycledViews) {
+        checkUserViewType(viewType);
+        registerViewType((viewType << VIEW_TYPE_SHIFT) | TYPE_PARENT, maxRecycledViews);
     }
 
     /**
-     * Set the ability to be able to click both the whole parent view and the custom button to trigger
-     * expanding and collapsing
+     * Registers a view type returned by {@link #getChildViewType(int, Object)}, enabling user
+     * view types. Call before setting the adapter on the RecyclerView.
      *
-     * @param parentAndIconClickable
+     * @param viewType         the user view type, at least 0
+     * @param maxRecycledViews the number of ViewHolders of this type the RecycledViewPool keeps,
+     *                         or a negative value to keep the pool's default
      */
-    public void setParentAndIconExpandOnClick(boolean parentAndIconClickable) {
-        mParentAndIconClickable = parentAndIconClickable;
+    public void registerChildViewType(int viewType, int maxRecycledViews) {
+        checkUserViewType(viewType);
+        registerViewType((viewType << VIEW_TYPE_SHIFT) | TYPE_CHILD, maxRecycledViews);
+    }
+
+    private static void checkUserViewType(int viewType) {
+        if (viewType < 0 || viewType > MAX_USER_VIEW_TYPE) {
+            throw new IllegalArgumentException("View types must be between 0 and " + MAX_USER_VIEW_TYPE);
+        }
+    }
+
+    private void registerViewType(int itemViewType, int maxRecycledViews) {
+        mHasUserViewTypes = true;
+        if (maxRecycledViews >= 0) {
+            mRecycledViewPoolSizes.put(itemViewType, maxRecycledViews);
+        }
     }
 
     /**
-     * Call this when removing the animtion. This will set the parent item to be the expand/collapse
-     * trigger. It will also disable the rotation animation.
+     * @param itemViewType a view type returned by {@link #getItemViewType(int)}
+     * @return true if the view type is a parent view type
      */
-    public void removeAnimation() {
-        mCustomParentAnimationViewId = CUSTOM_ANIMATION_VIEW_NOT_SET;
-        mAnimationDuration = CUSTOM_ANIMATION_DURATION_NOT_SET;
+    public static boolean isParentViewType(int itemViewType) {
+        return (itemViewType & TYPE_MASK) == TYPE_PARENT;
     }
 
-    public void addExpandCollapseListener(ExpandCollapseListener expandCollapseListener) {
-        mListener = expandCollapseListener;
+    /**
+     * @param itemViewType a view type returned by {@link #getItemViewType(int)}
+     * @return the user view type returned by getParentViewType or getChildViewType
+     */
+    public static int getUserViewType(int itemViewType) {
+        return (itemViewType & ExpandableRecycledViewPool.LOCAL_VIEW_TYPE_MASK) >> VIEW_TYPE_SHIFT;
     }
 
     /**
-     * Convenience method to expand a ParentObject if it is collapsed.
+     * Shares a RecycledViewPool with other adapters whose namespace is their class, so adapters
+     * of the same class reuse each other's ViewHolders. Call before setting the adapter on the
+     * RecyclerView; the pool is installed on every RecyclerView the adapter is attached to.
      *
-     * @param parentObject
-     * @param position
+     * @param sharedRecycledViewPool the pool, or null to use the RecyclerView's own pool
      */
-    public void expandParent(ParentObject parentObject, int position) {
-        Object helperItem = mHelper.getHelperItemAtPosition(position);
-        if (helperItem instanceof ParentWrapper) {
-            ParentWrapper parentWrapper = (ParentWrapper) helperItem;
-            if (parentWrapper.getParentObject().equals(parentObject) && !parentWrapper.isExpanded()) {
-                toggleParentExpansion(parentObject, position);
-            }
-        }
+    public void setSharedRecycledViewPool(ExpandableRecycledViewPool sharedRecycledViewPool) {
+        setSharedRecycledViewPool(sharedRecycledViewPool, getClass());
     }
 
     /**
-     * Convenience method to collapse a ParentObject if it is expanded.
+     * Shares a RecycledViewPool with other adapters. Adapters passing equal namespace keys must
+     * create the same ViewHolders for the same view types, and reuse each other's ViewHolders;
+     * adapters with different keys never do.
      *
-     * @param parentObject
-     * @param position
+     * @param sharedRecycledViewPool the pool, or null to use the RecyclerView's own pool
+     * @param namespaceKey
      */
-    public void collapseParent(ParentObject parentObject, int position) {
-        Object helperItem = mHelper.getHelperItemAtPosition(position);
-        if (helperItem instanceof ParentWrapper) {
-            ParentWrapper parentWrapper = (ParentWrapper) helperItem;
-            if (parentWrapper.getParentObject().equals(parentObject) && parentWrapper.isExpanded()) {
-                toggleParentExpansion(parentObject, position);
-            }
-        }
+    public void setSharedRecycledViewPool(ExpandableRecycledViewPool sharedRecycledViewPool,
+                                          Object namespaceKey) {
+        mSharedRecycledViewPool = sharedRecycledViewPool;
+        mViewTypeNamespace = sharedRecycledViewPool != null
+                ? sharedRecycledViewPool.obtainNamespace(namespaceKey)
+                : 0;
     }
 
     /**
-     * Method called to expand a ParentObject when clicked. This handles saving state, adding the
-     * corresponding child objects to the list (the recyclerview list) and updating that list.
-     * It also calls the appropriate ExpandCollapseListener methods, if it exists
+     * Installs the shared RecycledViewPool, if any, and applies the pool sizes of the registered
+     * view types.
      *
-     * @param parentObject
-     * @param position
+     * @param recyclerView
      */
-    private void toggleParentExpansion(ParentObject parentObject, int position) {
-        ParentWrapper parentWrapper = (ParentWrapper) mHelper.getHelperItemAtPosition(position);
-        if (parentWrapper == null) {
-            return;
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        if (mSharedRecycledViewPool != null) {
+            recyclerView.setRecycledViewPool(mSharedRecycledViewPool);
         }
-        if (parentWrapper.isExpanded()) {
-            parentWrapper.setExpanded(false);
-
-            List<?> childObjectList = ((ParentObject) parentWrapper.getParentObject()).getChildObjectList();
-            if (childObjectList != null) {
-                for (int i = childObjectList.size() - 1; i >= 0; i--) {
-                    Object parentChild = childObjectList.get(i);
-                    if (parentChild instanceof ParentObject) {
-                        for (int j = mItemList.size() - 1; j >= 0; j--) {
-                            Object item = mItemList.get(j);
-                            if (item == parentChild) {
-                                collapseParent((ParentObject) parentChild, j);
-                            }
-                        }
-                    }
-                }
-                List<Object> helperList = mHelper.getHelperItemList();
-                for (int i = childObjectList.size() - 1; i >= 0; i--) {
-                    int childPos = position + i + 1;
-                    mItemList.remove(childPos);
-                    helperList.remove(childPos);
-                    notifyItemRemoved(childPos);
-                }
-            }
-            if (mListener != null) {
-                int expandedCountBeforePosition = getExpandedItemCount(position);
-                mListener.onRecyclerViewItemCollapsed(parentObject,
-                                                                    position - expandedCountBeforePosition);
-            }
-        } else {
-            parentWrapper.setExpanded(true);
-
-            List<?> childObjectList = ((ParentObject) parentWrapper.getParentObject()).getChildObjectList();
-            if (childObjectList != null) {
-                for (int i = 0; i < childObjectList.size(); i++) {
-                    int newPos = position + i + 1;
-                    Object child = childObjectList.get(i);
-                    mHelper.addItem(newPos, child);
-                    mItemList.add(newPos, child);
-                    notifyItemInserted(newPos);
-                }
+        RecyclerView.RecycledViewPool recycledViewPool = recyclerView.getRecycledViewPool();
+        for (Map.Entry<Integer, Integer> entry : mRecycledViewPoolSizes.entrySet()) {
+            recycledViewPool.setMaxRecycledViews(mViewTypeNamespace | entry.getKey(), entry.getValue());
+        }
+        mRecyclerView = recyclerView;
+        warmUpChildViewHolders();
+        for (AsyncInflation asyncInflation : mAsyncInflations.values()) {
+            asyncInflation.fill();
+        }
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        if (mRecyclerView == recyclerView) {
+            mRecyclerView = null;
+            if (mViewHolderWarmUp != null) {
+                Looper.myQueue().removeIdleHandler(mViewHolderWarmUp);
+                mViewHolderWarmUp = null;
             }
-            if (mListener != null) {
-                int expandedCountBeforePosition = getExpandedItemCount(position);
-                mListener.onRecyclerViewItemExpanded(parentObject, position - expandedCountBeforePosition);
+            for (AsyncInflation asyncInflation : mAsyncInflations.values()) {
+                asyncInflation.clear();
             }
+            mInflationLayoutInflater = null;
         }
     }
 
     /**
-     * Method to get the number of expanded children before the specified position.
+     * Keeps ViewHolders of a child view type ready in the RecycledViewPool, so expanding a
+     * parent with many children does not inflate them all in the same frame. Once the adapter is
+     * attached, missing ViewHolders are created while the main thread is idle, a few
+     * milliseconds at a time. The pool keeps at least {@code count} ViewHolders of the type.
      *
-     * @param position
-     * @return number of expanded children before the specified position
+     * @param viewType the user view type, 0 unless child view types are registered
+     * @param count    the number of ViewHolders to keep ready, or 0 to stop warming up the type
      */
-    private int getExpandedItemCount(int position) {
-        if (position == 0) {
-            return 0;
+    public void setChildWarmUpCount(int viewType, int count) {
+        int itemViewType = (viewType << VIEW_TYPE_SHIFT) | TYPE_CHILD;
+        if (count <= 0) {
+            mChildWarmUpCounts.remove(itemViewType);
+            return;
         }
-
-        int expandedCount = 0;
-        for (int i = 0; i < position; i++) {
-            Object object = mItemList.get(i);
-            if (!(object instanceof ParentObject)) {
-                expandedCount++;
+        mChildWarmUpCounts.put(itemViewType, count);
+        Integer maxRecycledViews = mRecycledViewPoolSizes.get(itemViewType);
+        if (maxRecycledViews == null || maxRecycledViews < count) {
+            mRecycledViewPoolSizes.put(itemViewType, count);
+            if (mRecyclerView != null) {
+                mRecyclerView.getRecycledViewPool().setMaxRecycledViews(mViewTypeNamespace | itemViewType, count);
             }
         }
-        return expandedCount;
+        warmUpChildViewHolders();
     }
 
     /**
-     * Generates an ArrayList of type Object for keeping track of all objects including children
-     * that are added to the RV. Takes in a list of parents so the user doesn't have to pass in
-     * a list of objects.
-     *
-     * @param parentObjectList the list of all parent objects provided by the user
-     * @return ArrayList of type Object that handles the items in the RV
+     * Schedules topping up the RecycledViewPool with the child ViewHolders set by
+     * {@link #setChildWarmUpCount(int, int)} during idle time. This is done when the adapter is
+     * attached; call it again, for example when a parent is pressed, to replace ViewHolders
+     * taken by earlier expansions. Must be called on the main thread.
      */
-    private ArrayList<Object> generateObjectList(List<ParentObject> parentObjectList) {
-        ArrayList<Object> objectList = new ArrayList<>();
-        for (ParentObject parentObject : parentObjectList) {
-            objectList.add(parentObject);
+    public void warmUpChildViewHolders() {
+        if (mRecyclerView == null || mChildWarmUpCounts.isEmpty() || mViewHolderWarmUp != null) {
+            return;
         }
-        return objectList;
+        mViewHolderWarmUp = new ViewHolderWarmUp();
+        Looper.myQueue().addIdleHandler(mViewHolderWarmUp);
     }
 
     /**
-     * Should be called from onSaveInstanceState of Activity that holds the RecyclerView.
-     * This will make sure to add the generated HashMap as an extra
-     * to the bundle to be used in OnRestoreInstanceState().
+     * Inflates ParentViewHolders of a parent view type on a background thread ahead of demand.
+     * Once the adapter is attached, up to {@code count} of them are kept ready and handed out
+     * when the RecyclerView needs a new ViewHolder of the type; if none is ready, it is created
+     * on the main thread as usual.
+     * <p/>
+     * {@link #onCreateParentViewHolder(ViewGroup, int, LayoutInflater)} is then called on the
+     * inflation thread for this type. It must inflate views with the LayoutInflater it is given,
+     * which is never used by the main thread, and must not touch the adapter's state or create
+     * anything that needs a Looper, such as a Handler. If it throws, the failure is logged and
+     * the type is inflated on the main thread from then on.
      *
-     * @param savedInstanceStateBundle
+     * @param viewType the user view type, 0 unless parent view types are registered
+     * @param count    the number of ViewHolders to keep ready, or 0 to inflate the type on the
+     *                 main thread
      */
-    public void onSaveInstanceState(Bundle savedInstanceStateBundle) {
-        ArrayList<Integer> expanded = new ArrayList<>();
-        for (int i = 0; i < mItemList.size(); i++) {
-            Object helper = mHelper.getHelperItemAtPosition(i);
-            if (helper instanceof ParentWrapper) {
-                ParentWrapper wrapper = (ParentWrapper) helper;
-                if (wrapper.isExpanded()) {
-                    expanded.add(i);
+    public void setParentAsyncInflationCount(int viewType, int count) {
+        setAsyncInflationCount((viewType << VIEW_TYPE_SHIFT) | TYPE_PARENT, count);
+    }
+
+    /**
+     * Inflates ChildViewHolders of a child view type on a background thread ahead of demand.
+     * See {@link #setParentAsyncInflationCount(int, int)};
+     * {@link #onCreateChildViewHolder(ViewGroup, int, LayoutInflater)} is then called on the
+     * inflation thread for this type.
+     *
+     * @param viewType the user view type, 0 unless child view types are registered
+     * @param count    the number of ViewHolders to keep ready, or 0 to inflate the type on the
+     *                 main thread
+     */
+    public void setChildAsyncInflationCount(int viewType, int count) {
+        setAsyncInflationCount((viewType << VIEW_TYPE_SHIFT) | TYPE_CHILD, count);
+    }
+
+    private void setAsyncInflationCount(int itemViewType, int count) {
+        AsyncInflation asyncInflation = mAsyncInflations.get(itemViewType);
+        if (count <= 0) {
+            if (asyncInflation != null) {
+                asyncInflation.clear();
+                mAsyncInflations.remove(itemViewType);
+            }
+            return;
+        }
+        if (asyncInflation == null) {
+            asyncInflation = new AsyncInflation(itemViewType);
+            mAsyncInflations.put(itemViewType, asyncInflation);
+        }
+        asyncInflation.mCount = count;
+        asyncInflation.fill();
+    }
+
+    /**
+     * Sets the executor used to inflate ViewHolders ahead of demand. By default a single
+     * background thread shared by all adapters is used.
+     *
+     * @param inflationExecutor
+     */
+    public void setInflationExecutor(Executor inflationExecutor) {
+        mInflationExecutor = inflationExecutor;
+    }
+
+    /**
+     * @return the LayoutInflater passed to asynchronous creation, cloned once from the
+     * RecyclerView's context so that it is never used by the main thread
+     */
+    private LayoutInflater getInflationLayoutInflater() {
+        if (mInflationLayoutInflater == null) {
+            Context context = mRecyclerView.getContext();
+            mInflationLayoutInflater = LayoutInflater.from(context).cloneInContext(context);
+        }
+        return mInflationLayoutInflater;
+    }
+
+    private Executor getInflationExecutor() {
+        if (mInflationExecutor != null) {
+            return mInflationExecutor;
+        }
+        if (sDefaultInflationExecutor == null) {
+            sDefaultInflationExecutor = Executors.newSingleThreadExecutor();
+        }
+        return sDefaultInflationExecutor;
+    }
+
+    /**
+     * @param viewType
+     * @return a ViewHolder of the view type inflated ahead of demand, or null if none is ready
+     */
+    private RecyclerView.ViewHolder takeInflatedViewHolder(int viewType) {
+        if (mAsyncInflations.isEmpty()) {
+            return null;
+        }
+        int itemViewType = viewType & ExpandableRecycledViewPool.LOCAL_VIEW_TYPE_MASK;
+        AsyncInflation asyncInflation = mAsyncInflations.get(itemViewType);
+        if (asyncInflation == null) {
+            return null;
+        }
+        RecyclerView.ViewHolder holder = asyncInflation.mReadyViewHolders.poll();
+        asyncInflation.fill();
+        return holder;
+    }
+
+    /**
+     * @param recycledViewPool
+     * @param itemViewType
+     * @param holders          reused list for the ViewHolders taken out of the pool
+     * @return the number of ViewHolders of the type in the pool
+     */
+    private static int countRecycledViews(RecyclerView.RecycledViewPool recycledViewPool, int itemViewType,
+                                          List<RecyclerView.ViewHolder> holders) {
+        RecyclerView.ViewHolder holder;
+        while ((holder = recycledViewPool.getRecycledView(itemViewType)) != null) {
+            holders.add(holder);
+        }
+        int count = holders.size();
+        for (int i = 0; i < count; i++) {
+            recycledViewPool.putRecycledView(holders.get(i));
+        }
+        holders.clear();
+        return count;
+    }
+
+    /**
+     * On click listener implementation for the ParentObject. This is called from ParentViewHolder.
+     * See OnClick in ParentViewHolder
+     *
+     * @param position
+     */
+    @Override
+    public void onParentItemClickListener(int position) {
+        if (mItemList.isParent(position)) {
+            ParentObject parentObject = (ParentObject) mItemList.get(position);
+            toggleParentExpansion(parentObject, position);
+        }
+    }
+
+    /**
+     * Setter for the Default rotation duration (200 MS)
+     */
+    public void setParentClickableViewAnimationDefaultDuration() {
+        mAnimationDuration = DEFAULT_ROTATE_DURATION_MS;
+        updateBindingStrategy();
+    }
+
+    /**
+     * Setter for a custom rotation animation duration in MS
+     *
+     * @param animationDuration in MS
+     */
+    public void setParentClickableViewAnimationDuration(long animationDuration) {
+        mAnimationDuration = animationDuration;
+        updateBindingStrategy();
+    }
+
+    /**
+     * Setter for a custom clickable view to expand or collapse the item. This should be passed
+     * as a reference to the View's R.id
+     *
+     * @param customParentAnimationViewId
+     */
+    public void setCustomParentAnimationViewId(int customParentAnimationViewId) {
+        mCustomParentAnimationViewId = customParentAnimationViewId;
+        updateBindingStrategy();
+    }
+
+    /**
+     * Set the ability to be able to click both the whole parent view and the custom button to trigger
+     * expanding and collapsing
+     *
+     * @param parentAndIconClickable
+     */
+    public void setParentAndIconExpandOnClick(boolean parentAndIconClickable) {
+        mParentAndIconClickable = parentAndIconClickable;
+        updateBindingStrategy();
+    }
+
+    /**
+     * Call this when removing the animtion. This will set the parent item to be the expand/collapse
+     * trigger. It will also disable the rotation animation.
+     */
+    public void removeAnimation() {
+        mCustomParentAnimationViewId = CUSTOM_ANIMATION_VIEW_NOT_SET;
+        mAnimationDuration = CUSTOM_ANIMATION_DURATION_NOT_SET;
+        updateBindingStrategy();
+    }
+
+    public void addExpandCollapseListener(ExpandCollapseListener expandCollapseListener) {
+        mListener = expandCollapseListener;
+    }
+
+    /**
+     * Sets the listener notified of the duration of expansions, collapses, state restores and
+     * ViewHolder creates and binds.
+     *
+     * @param metricsListener the listener, or null to stop timing operations
+     */
+    public void setMetricsListener(AdapterMetricsListener metricsListener) {
+        mMetricsListener = metricsListener;
+    }
+
+    /**
+     * Convenience method to expand a ParentObject if it is collapsed.
+     *
+     * @param parentObject
+     * @param position
+     */
+    public void expandParent(ParentObject parentObject, int position) {
+        if (mItemList.isParent(position) && mItemList.get(position).equals(parentObject)
+                && !mItemList.isExpanded(position)) {
+            toggleParentExpansion(parentObject, position);
+        }
+    }
+
+    /**
+     * Convenience method to collapse a ParentObject if it is expanded.
+     *
+     * @param parentObject
+     * @param position
+     */
+    public void collapseParent(ParentObject parentObject, int position) {
+        if (mItemList.isParent(position) && mItemList.get(position).equals(parentObject)
+                && mItemList.isExpanded(position)) {
+            toggleParentExpansion(parentObject, position);
+        }
+    }
+
+    /**
+     * Expands every ParentObject, including nested ParentObjects, rebuilding the list in a
+     * single pass and dispatching a single change notification. The ExpandCollapseListener is
+     * not called for each parent.
+     */
+    public void expandAllParents() {
+        long startNanos = mMetricsListener != null ? System.nanoTime() : 0;
+        List<ParentObject> restoredParents = restoreCachedChildLists();
+        int insertedCount = mItemList.expandAllParents();
+        restashChildLists(restoredParents);
+        if (insertedCount > 0) {
+            notifyDataSetChanged();
+        }
+        if (mMetricsListener != null) {
+            mMetricsListener.onParentsExpanded(insertedCount, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Expands the given ParentObjects, rebuilding the list in a single pass and dispatching a
+     * single change notification. A nested ParentObject is only expanded if it is visible once
+     * its ancestors in the collection have been expanded. The ExpandCollapseListener is not
+     * called for each parent.
+     *
+     * @param parentObjects
+     */
+    public void expandParents(Collection<? extends ParentObject> parentObjects) {
+        long startNanos = mMetricsListener != null ? System.nanoTime() : 0;
+        List<ParentObject> restoredParents = restoreCachedChildLists();
+        int insertedCount = mItemList.expandParents(parentObjects);
+        restashChildLists(restoredParents);
+        if (insertedCount > 0) {
+            notifyDataSetChanged();
+        }
+        if (mMetricsListener != null) {
+            mMetricsListener.onParentsExpanded(insertedCount, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Collapses every ParentObject, rebuilding the list in a single pass and dispatching a
+     * single change notification. The ExpandCollapseListener is not called for each parent.
+     */
+    public void collapseAllParents() {
+        long startNanos = mMetricsListener != null ? System.nanoTime() : 0;
+        stashChildLists(0, mItemList.size());
+        int removedCount = mItemList.collapseAllParents();
+        if (removedCount > 0) {
+            notifyDataSetChanged();
+        }
+        if (mMetricsListener != null) {
+            mMetricsListener.onParentsCollapsed(removedCount, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Notifies the adapter that a ParentObject was inserted into the parent list at
+     * {@code parentIndex}. The parent is added collapsed.
+     *
+     * @param parentIndex
+     */
+    public void notifyParentItemInserted(int parentIndex) {
+        int position = mItemList.insertParent(parentIndex, mParentItemList.get(parentIndex));
+        notifyItemInserted(position);
+    }
+
+    /**
+     * Notifies the adapter that the ParentObject at {@code parentIndex} was removed from the
+     * parent list. Its visible children are removed along with it, and pending loads and cached
+     * child lists of the removed parents are dropped.
+     *
+     * @param parentIndex
+     */
+    public void notifyParentItemRemoved(int parentIndex) {
+        int position = mItemList.getParentPosition(parentIndex);
+        releaseParents(position, mItemList.getSubtreeEnd(position));
+        int removedCount = mItemList.removeParent(parentIndex);
+        notifyItemRangeRemoved(position, removedCount);
+    }
+
+    /**
+     * Notifies the adapter that the ParentObject at {@code parentIndex} changed or was replaced.
+     * Its expanded state is kept. If it was replaced by a different object, its visible children
+     * are replaced with the children of the new object.
+     *
+     * @param parentIndex
+     */
+    public void notifyParentItemChanged(int parentIndex) {
+        int position = mItemList.getParentPosition(parentIndex);
+        boolean expanded = mItemList.isExpanded(position);
+        int removedCount = mItemList.changeParent(parentIndex, mParentItemList.get(parentIndex));
+        int insertedCount = expanded && !mItemList.isExpanded(position)
+                ? mItemList.expandParent(position)
+                : 0;
+        notifyItemChanged(position);
+        notifyChildRowsReplaced(position, removedCount, insertedCount);
+    }
+
+    /**
+     * Notifies the adapter that a child was inserted at {@code childIndex} in the child list of
+     * the ParentObject at {@code parentIndex}. Nothing is dispatched if the parent is collapsed.
+     *
+     * @param parentIndex
+     * @param childIndex
+     */
+    public void notifyChildItemInserted(int parentIndex, int childIndex) {
+        int position = mItemList.insertChild(parentIndex, childIndex);
+        if (position >= 0) {
+            notifyItemInserted(position);
+        }
+    }
+
+    /**
+     * Notifies the adapter that the child at {@code childIndex} was removed from the child list
+     * of the ParentObject at {@code parentIndex}. Nothing is dispatched if the parent is
+     * collapsed.
+     *
+     * @param parentIndex
+     * @param childIndex
+     */
+    public void notifyChildItemRemoved(int parentIndex, int childIndex) {
+        int position = mItemList.getChildPosition(parentIndex, childIndex);
+        if (position >= 0) {
+            int removedCount = mItemList.removeChild(parentIndex, childIndex);
+            notifyItemRangeRemoved(position, removedCount);
+        }
+    }
+
+    /**
+     * Notifies the adapter that the child at {@code childIndex} in the child list of the
+     * ParentObject at {@code parentIndex} changed or was replaced. Nothing is dispatched if the
+     * parent is collapsed.
+     *
+     * @param parentIndex
+     * @param childIndex
+     */
+    public void notifyChildItemChanged(int parentIndex, int childIndex) {
+        int position = mItemList.getChildPosition(parentIndex, childIndex);
+        if (position >= 0) {
+            int removedCount = mItemList.changeChild(parentIndex, childIndex);
+            notifyItemChanged(position);
+            if (removedCount > 0) {
+                notifyItemRangeRemoved(position + 1, removedCount);
+            }
+        }
+    }
+
+    /**
+     * Method called to expand a ParentObject when clicked. This handles saving state, adding the
+     * corresponding child objects to the list (the recyclerview list) and updating that list.
+     * It also calls the appropriate ExpandCollapseListener methods, if it exists
+     * <p/>
+     * Children are spliced in and out of the list as a single range and a single range
+     * notification is dispatched. The parent itself is notified with {@link #EXPANSION_PAYLOAD}
+     * so only its expanded state is rebound. Collapsing a parent also collapses any expanded descendants as
+     * part of the same range. Each of them is still reported to the ExpandCollapseListener before
+     * the parent, last and deepest first.
+     *
+     * @param parentObject
+     * @param position
+     */
+    private void toggleParentExpansion(ParentObject parentObject, int position) {
+        long startNanos = mMetricsListener != null ? System.nanoTime() : 0;
+        if (mItemList.isExpanded(position)) {
+            mPendingExpansions.remove(parentObject);
+            int subtreeEnd = mItemList.getSubtreeEnd(position);
+            stashChildLists(position, subtreeEnd);
+            List<ParentObject> collapsedDescendants = null;
+            List<Integer> collapsedDescendantIndexes = null;
+            if (mListener != null) {
+                collapsedDescendants = new ArrayList<>();
+                collapsedDescendantIndexes = new ArrayList<>();
+                collectExpandedDescendants(position, subtreeEnd, collapsedDescendants,
+                                           collapsedDescendantIndexes);
+            }
+            int removedCount = mItemList.collapseParent(position);
+            notifyItemChanged(position, EXPANSION_PAYLOAD);
+            if (removedCount > 0) {
+                notifyItemRangeRemoved(position + 1, removedCount);
+            }
+            if (mMetricsListener != null) {
+                mMetricsListener.onParentCollapsed(position, removedCount, System.nanoTime() - startNanos);
+            }
+            if (collapsedDescendants != null) {
+                for (int i = collapsedDescendants.size() - 1; i >= 0; i--) {
+                    mListener.onRecyclerViewItemCollapsed(collapsedDescendants.get(i),
+                                                          collapsedDescendantIndexes.get(i));
                 }
+                mListener.onRecyclerViewItemCollapsed(parentObject,
+                                                                    mItemList.getParentRowCountBefore(position));
+            }
+        } else {
+            if (mChildListLoader != null && parentObject.getChildObjectList() == null) {
+                List<?> cachedChildObjectList = mChildListCache != null
+                        ? mChildListCache.take(parentObject)
+                        : null;
+                if (cachedChildObjectList != null) {
+                    parentObject.setChildObjectList(cachedChildObjectList);
+                } else {
+                    startChildListLoad(parentObject, position);
+                }
+            }
+            List<?> childObjectList = parentObject.getChildObjectList();
+            int insertedCount;
+            if (mIncrementalExpansionThreshold > 0 && childObjectList != null
+                    && childObjectList.size() > mIncrementalExpansionThreshold) {
+                insertedCount = mItemList.expandParent(position, getScreenfulRowCount());
+                IncrementalExpansion incrementalExpansion = new IncrementalExpansion(mItemList, parentObject,
+                                                                                     position, insertedCount);
+                mPendingExpansions.put(parentObject, incrementalExpansion);
+                incrementalExpansion.schedule();
+            } else {
+                insertedCount = mItemList.expandParent(position);
+            }
+            notifyItemChanged(position, EXPANSION_PAYLOAD);
+            if (insertedCount > 0) {
+                notifyItemRangeInserted(position + 1, insertedCount);
+            }
+            if (mMetricsListener != null) {
+                mMetricsListener.onParentExpanded(position, insertedCount, System.nanoTime() - startNanos);
+            }
+            if (mListener != null) {
+                mListener.onRecyclerViewItemExpanded(parentObject, mItemList.getParentRowCountBefore(position));
+            }
+        }
+    }
+
+    /**
+     * Collects the expanded parents nested below the parent at the specified position, in list
+     * order, along with the index passed to the ExpandCollapseListener for each of them.
+     *
+     * @param position
+     * @param subtreeEnd    the end of the parent's visible subtree
+     * @param parentObjects receives the expanded nested parents
+     * @param parentIndexes receives the number of parent rows before each of them
+     */
+    private void collectExpandedDescendants(int position, int subtreeEnd, List<ParentObject> parentObjects,
+                                            List<Integer> parentIndexes) {
+        int parentIndex = mItemList.getParentRowCountBefore(position);
+        for (int i = position + 1; i < subtreeEnd; i++) {
+            if (!mItemList.isParent(i)) {
+                continue;
+            }
+            parentIndex++;
+            if (mItemList.isExpanded(i)) {
+                parentObjects.add((ParentObject) mItemList.get(i));
+                parentIndexes.add(parentIndex);
             }
         }
-        savedInstanceStateBundle.putIntegerArrayList(EXPANDED_POSITION_LIST, expanded);
+    }
+
+    /**
+     * @return the number of rows shown by the RecyclerView, or the incremental expansion
+     * threshold if it is not laid out
+     */
+    private int getScreenfulRowCount() {
+        int rowCount = mRecyclerView != null ? mRecyclerView.getChildCount() : 0;
+        return rowCount > 0 ? rowCount : mIncrementalExpansionThreshold;
+    }
+
+    /**
+     * Inserts the next chunks of the parent's children, stopping once the frame budget is spent,
+     * and schedules the next frame's chunks if children are left.
+     *
+     * @param incrementalExpansion
+     */
+    private void continueIncrementalExpansion(IncrementalExpansion incrementalExpansion) {
+        ParentObject parentObject = incrementalExpansion.mParentObject;
+        if (mPendingExpansions.get(parentObject) != incrementalExpansion) {
+            return;
+        }
+        int position = mItemList == incrementalExpansion.mItemList
+                ? findRow(parentObject, incrementalExpansion.mPosition)
+                : -1;
+        if (position < 0 || !mItemList.isExpanded(position)) {
+            mPendingExpansions.remove(parentObject);
+            return;
+        }
+        incrementalExpansion.mPosition = position;
+
+        long deadlineNanos = System.nanoTime() + mExpansionFrameBudgetNanos;
+        int insertPosition = mItemList.getSubtreeEnd(position);
+        int insertedCount = 0;
+        int chunkSize = incrementalExpansion.mChunkSize;
+        boolean finished;
+        while (true) {
+            long chunkStartNanos = System.nanoTime();
+            int chunkCount = mItemList.showMoreChildren(position, incrementalExpansion.mNextChildIndex, chunkSize);
+            incrementalExpansion.mNextChildIndex += chunkCount;
+            insertedCount += chunkCount;
+            finished = chunkCount < chunkSize;
+
+            // size the next chunk to fit the rest of the budget, at most doubling it
+            long now = System.nanoTime();
+            long nanosPerRow = Math.max((now - chunkStartNanos) / Math.max(chunkCount, 1), 1);
+            chunkSize = (int) Math.max(Math.min((deadlineNanos - now) / nanosPerRow, 2l * chunkSize), 1);
+            if (finished || now >= deadlineNanos) {
+                break;
+            }
+        }
+        incrementalExpansion.mChunkSize = chunkSize;
+
+        if (insertedCount > 0) {
+            notifyItemRangeInserted(insertPosition, insertedCount);
+        }
+        if (finished) {
+            mPendingExpansions.remove(parentObject);
+        } else {
+            incrementalExpansion.schedule();
+        }
+    }
+
+    /**
+     * Gives the parent placeholder children and starts loading its real children.
+     *
+     * @param parentObject
+     * @param position
+     */
+    private void startChildListLoad(ParentObject parentObject, int position) {
+        int placeholderCount = mChildListLoader.getPlaceholderCount(parentObject);
+        List<ChildPlaceholder> placeholders = new ArrayList<>(placeholderCount);
+        for (int i = 0; i < placeholderCount; i++) {
+            placeholders.add(new ChildPlaceholder(parentObject, i));
+        }
+        parentObject.setChildObjectList(placeholders);
+
+        ChildListLoad childListLoad = new ChildListLoad(mChildListLoader, parentObject, position,
+                                                          getMainHandler());
+        mPendingChildLoads.put(parentObject, childListLoad);
+        Executor executor = mChildLoadExecutor != null ? mChildLoadExecutor : getDiffExecutor();
+        executor.execute(childListLoad);
+    }
+
+    /**
+     * Drops the pending load of the parent's children, if any, so they are loaded again the
+     * next time it is expanded.
+     *
+     * @param parentObject
+     */
+    private void cancelChildListLoad(ParentObject parentObject) {
+        ChildListLoad childListLoad = mPendingChildLoads.remove(parentObject);
+        if (childListLoad != null) {
+            childListLoad.mCancelled = true;
+            parentObject.setChildObjectList(null);
+        }
+    }
+
+    /**
+     * Releases the parents of the current rows that are not in the new parent list, along with
+     * the parents visible below them.
+     *
+     * @param parentItemList the parent list replacing the current one
+     */
+    private void releaseRemovedParents(List<ParentObject> parentItemList) {
+        if (mItemList == null || !hasChildListState()) {
+            return;
+        }
+        Set<Object> keptParents = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        keptParents.addAll(parentItemList);
+        boolean removed = false;
+        for (int i = 0; i < mItemList.size(); i++) {
+            if (!mItemList.isParent(i)) {
+                continue;
+            }
+            if (mItemList.getDepth(i) == 0) {
+                removed = !keptParents.contains(mItemList.get(i));
+            }
+            if (removed) {
+                releaseParent((ParentObject) mItemList.get(i));
+            }
+        }
+    }
+
+    /**
+     * Releases the parents in [fromPosition, toPosition), which are being removed.
+     *
+     * @param fromPosition
+     * @param toPosition
+     */
+    private void releaseParents(int fromPosition, int toPosition) {
+        if (!hasChildListState()) {
+            return;
+        }
+        for (int i = fromPosition; i < toPosition; i++) {
+            if (mItemList.isParent(i)) {
+                releaseParent((ParentObject) mItemList.get(i));
+            }
+        }
+    }
+
+    /**
+     * Cancels the pending load of a removed parent's children and drops its cached child list,
+     * so neither keeps the parent reachable.
+     *
+     * @param parentObject
+     */
+    private void releaseParent(ParentObject parentObject) {
+        cancelChildListLoad(parentObject);
+        mPendingExpansions.remove(parentObject);
+        mLoadedParents.remove(parentObject);
+        if (mChildListCache != null) {
+            mChildListCache.remove(parentObject);
+        }
+    }
+
+    /**
+     * @return true if any parent may have a pending load, a loaded child list or a cached one
+     */
+    private boolean hasChildListState() {
+        return !mPendingChildLoads.isEmpty() || !mLoadedParents.isEmpty()
+                || (mChildListCache != null && mChildListCache.size() > 0);
+    }
+
+    /**
+     * Prepares the expanded parents in [fromPosition, toPosition) for being collapsed: pending
+     * loads of their children are cancelled and, if a ChildListCache is set, the child lists
+     * that came from the ChildListLoader are moved into it.
+     *
+     * @param fromPosition
+     * @param toPosition
+     */
+    private void stashChildLists(int fromPosition, int toPosition) {
+        if (mChildListLoader == null && mPendingChildLoads.isEmpty()) {
+            return;
+        }
+        for (int i = fromPosition; i < toPosition; i++) {
+            if (!mItemList.isExpanded(i)) {
+                continue;
+            }
+            ParentObject parentObject = (ParentObject) mItemList.get(i);
+            cancelChildListLoad(parentObject);
+            List<?> childObjectList = parentObject.getChildObjectList();
+            if (mChildListCache != null && childObjectList != null
+                    && mLoadedParents.contains(parentObject)) {
+                mChildListCache.put(parentObject, childObjectList);
+                parentObject.setChildObjectList(null);
+            }
+        }
+    }
+
+    /**
+     * Starts loading the children of the expanded parents whose child list is null, which a bulk
+     * expansion expanded with no children, and inserts their placeholder rows.
+     *
+     * @param notify true to notify the inserted rows, false if a full change notification follows
+     */
+    private void loadMissingChildLists(boolean notify) {
+        if (mChildListLoader == null) {
+            return;
+        }
+        // from the end, so inserting placeholder rows does not move the rows still to be visited
+        for (int i = mItemList.size() - 1; i >= 0; i--) {
+            if (!mItemList.isExpanded(i)) {
+                continue;
+            }
+            ParentObject parentObject = (ParentObject) mItemList.get(i);
+            if (parentObject.getChildObjectList() != null) {
+                continue;
+            }
+            startChildListLoad(parentObject, i);
+            mItemList.collapseParent(i);
+            int insertedCount = mItemList.expandParent(i);
+            if (notify && insertedCount > 0) {
+                notifyItemRangeInserted(i + 1, insertedCount);
+            }
+        }
+    }
+
+    /**
+     * Gives the lists in the ChildListCache back to their parents before a bulk expansion, which
+     * does not load children. Pass the result to {@link #restashChildLists(List)} afterwards.
+     *
+     * @return the parents given their list back, least recently stored first
+     */
+    private List<ParentObject> restoreCachedChildLists() {
+        if (mChildListCache == null) {
+            return Collections.emptyList();
+        }
+        return mChildListCache.restoreAll();
+    }
+
+    /**
+     * Moves the lists given back by {@link #restoreCachedChildLists()} into the ChildListCache
+     * again for the parents a bulk expansion left collapsed, so they stay within its limits.
+     *
+     * @param restoredParents
+     */
+    private void restashChildLists(List<ParentObject> restoredParents) {
+        if (restoredParents.isEmpty()) {
+            return;
+        }
+        Set<Object> expandedParents = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        expandedParents.addAll(mItemList.getExpandedParents());
+        for (int i = 0; i < restoredParents.size(); i++) {
+            ParentObject parentObject = restoredParents.get(i);
+            if (!expandedParents.contains(parentObject)) {
+                mChildListCache.put(parentObject, parentObject.getChildObjectList());
+                parentObject.setChildObjectList(null);
+            }
+        }
+    }
+
+    /**
+     * Stores the loaded children and, if the parent is still visible and expanded, replaces its
+     * placeholder rows with them, dispatching a range change for the rows in common.
+     *
+     * @param childListLoad
+     * @param childObjectList
+     */
+    private void onChildListLoaded(ChildListLoad childListLoad, List<?> childObjectList) {
+        ParentObject parentObject = childListLoad.mParentObject;
+        if (mPendingChildLoads.get(parentObject) != childListLoad) {
+            return;
+        }
+        mPendingChildLoads.remove(parentObject);
+        mPendingExpansions.remove(parentObject);
+        parentObject.setChildObjectList(childObjectList);
+        mLoadedParents.add(parentObject);
+
+        int position = findRow(parentObject, childListLoad.mPosition);
+        if (position < 0 || !mItemList.isExpanded(position)) {
+            return;
+        }
+        int removedCount = mItemList.collapseParent(position);
+        int insertedCount = mItemList.expandParent(position);
+        notifyChildRowsReplaced(position, removedCount, insertedCount);
+    }
+
+    /**
+     * Dispatches a range change for the rows in common after the rows below a parent were
+     * replaced, and a range insertion or removal for the rest.
+     *
+     * @param position      the position of the parent
+     * @param removedCount  the number of rows removed below the parent
+     * @param insertedCount the number of rows inserted in their place
+     */
+    private void notifyChildRowsReplaced(int position, int removedCount, int insertedCount) {
+        int changedCount = Math.min(removedCount, insertedCount);
+        if (changedCount > 0) {
+            notifyItemRangeChanged(position + 1, changedCount);
+        }
+        if (insertedCount > removedCount) {
+            notifyItemRangeInserted(position + 1 + changedCount, insertedCount - removedCount);
+        } else if (removedCount > insertedCount) {
+            notifyItemRangeRemoved(position + 1 + changedCount, removedCount - insertedCount);
+        }
+    }
+
+    /**
+     * @param item
+     * @param positionHint the position the item was last seen at
+     * @return the current position of the row holding the item, or -1 if it is not visible
+     */
+    private int findRow(Object item, int positionHint) {
+        int size = mItemList.size();
+        if (positionHint < size && mItemList.get(positionHint) == item) {
+            return positionHint;
+        }
+        for (int i = 0; i < size; i++) {
+            if (mItemList.get(i) == item) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Should be called from onSaveInstanceState of Activity that holds the RecyclerView.
+     * This will make sure to add the expanded states as an extra to the bundle to be used in
+     * OnRestoreInstanceState().
+     * <p/>
+     * If every expanded ParentObject implements {@link StableIdObject}, the stable ids of the
+     * expanded parents are saved, so the states survive reordering of the data. Otherwise the
+     * states are saved as a bit set with one bit per visible parent, in list order.
+     *
+     * @param savedInstanceStateBundle
+     */
+    public void onSaveInstanceState(Bundle savedInstanceStateBundle) {
+        long[] expandedStableIds = mItemList.getExpandedStableIds();
+        if (expandedStableIds != null) {
+            savedInstanceStateBundle.putLongArray(EXPANDED_STABLE_IDS, expandedStableIds);
+        } else {
+            savedInstanceStateBundle.putLongArray(EXPANDED_PARENT_BITS, mItemList.getExpandedParentBits());
+        }
     }
 
     /**
      * Should be called from onRestoreInstanceState of Activity that contains the ExpandingRecyclerView.
-     * This will fetch the HashMap that was saved in onSaveInstanceState() and use it to restore
-     * the expanded states before the rotation or onSaveInstanceState was called.
+     * This will fetch the expanded states that were saved in onSaveInstanceState() and use them
+     * to restore the expanded states before the rotation or onSaveInstanceState was called. The
+     * list is rebuilt in a single pass. If a ChildListLoader is set, the children of restored
+     * parents whose child list is null are loaded as when they are clicked.
      *
      * @param savedInstanceStateBundle
      */
     public void onRestoreInstanceState(Bundle savedInstanceStateBundle) {
-        if (savedInstanceStateBundle == null || !savedInstanceStateBundle.containsKey(EXPANDED_POSITION_LIST)) {
+        if (savedInstanceStateBundle == null) {
             return;
         }
 
-        ArrayList<Integer> expanded = savedInstanceStateBundle.getIntegerArrayList(EXPANDED_POSITION_LIST);
-        if (expanded == null) {
+        long[] expandedStableIds = savedInstanceStateBundle.getLongArray(EXPANDED_STABLE_IDS);
+        long[] expandedParentBits = savedInstanceStateBundle.getLongArray(EXPANDED_PARENT_BITS);
+        if (expandedStableIds == null && expandedParentBits == null) {
             return;
         }
 
-        int i = 0;
-        while (i < mHelper.getHelperItemList().size()) {
-            if (expanded.contains(i)) {
-                Object item = mHelper.getHelperItemAtPosition(i);
-                if (item instanceof ParentWrapper) {
-                    ParentWrapper parentWrapper = (ParentWrapper) item;
-                    if (!parentWrapper.isExpanded()) {
-                        parentWrapper.setExpanded(true);
-                        List<?> childObjectList = parentWrapper.getParentObject().getChildObjectList();
-                        if (childObjectList != null) {
-                            for (int j = 0; j < childObjectList.size(); j++) {
-                                Object child = childObjectList.get(j);
-                                int nextPos = i + j + 1;
-                                mItemList.add(nextPos, child);
-                                mHelper.addItem(nextPos, child);
-                            }
-                        }
+        long startNanos = mMetricsListener != null ? System.nanoTime() : 0;
+        List<ParentObject> restoredParents = restoreCachedChildLists();
+        int insertedCount = expandedStableIds != null
+                ? mItemList.expandStableIds(expandedStableIds)
+                : mItemList.expandParentBits(expandedParentBits);
+        restashChildLists(restoredParents);
+        loadMissingChildLists(false);
+        notifyDataSetChanged();
+        if (mMetricsListener != null) {
+            mMetricsListener.onStateRestored(insertedCount, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Loads the children of one parent on a background thread and hands them to the main thread.
+     */
+    private class ChildListLoad implements Runnable {
+
+        final ChildListLoader mChildListLoader;
+        final ParentObject    mParentObject;
+        final int             mPosition;
+        final Handler         mHandler;
+        volatile boolean      mCancelled;
+
+        ChildListLoad(ChildListLoader childListLoader, ParentObject parentObject, int position,
+                      Handler handler) {
+            mChildListLoader = childListLoader;
+            mParentObject = parentObject;
+            mPosition = position;
+            mHandler = handler;
+        }
+
+        @Override
+        public void run() {
+            if (mCancelled) {
+                return;
+            }
+            final List<?> childObjectList = mChildListLoader.loadChildObjectList(mParentObject);
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    onChildListLoaded(ChildListLoad.this, childObjectList);
+                }
+            });
+        }
+    }
+
+    /**
+     * The state of a parent whose children are being inserted over several frames.
+     */
+    private class IncrementalExpansion implements Runnable {
+
+        final ExpandableItemList mItemList;
+        final ParentObject       mParentObject;
+        int                      mPosition;
+        int                      mNextChildIndex;
+        int                      mChunkSize;
+
+        IncrementalExpansion(ExpandableItemList itemList, ParentObject parentObject, int position,
+                             int insertedCount) {
+            mItemList = itemList;
+            mParentObject = parentObject;
+            mPosition = position;
+            mNextChildIndex = insertedCount;
+            mChunkSize = Math.max(insertedCount, 1);
+        }
+
+        void schedule() {
+            if (mRecyclerView != null) {
+                ViewCompat.postOnAnimation(mRecyclerView, this);
+            } else {
+                getMainHandler().post(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            continueIncrementalExpansion(this);
+        }
+    }
+
+    /**
+     * The ready queue of one view type inflated ahead of demand. Only touched on the main thread;
+     * ViewHolders are created on the inflation executor and handed back through the main Handler.
+     */
+    private class AsyncInflation {
+
+        final int                                 mItemViewType;
+        final LinkedList<RecyclerView.ViewHolder> mReadyViewHolders = new LinkedList<>();
+        int                                       mCount;
+        int                                       mPendingCount;
+        volatile int                              mGeneration;
+
+        AsyncInflation(int itemViewType) {
+            mItemViewType = itemViewType;
+        }
+
+        /**
+         * Starts inflating enough ViewHolders to have {@code mCount} of them ready.
+         */
+        void fill() {
+            if (mRecyclerView == null) {
+                return;
+            }
+            while (mReadyViewHolders.size() + mPendingCount < mCount) {
+                mPendingCount++;
+                getInflationExecutor().execute(new Inflation(this, mGeneration, mRecyclerView,
+                                                             getInflationLayoutInflater(),
+                                                             getMainHandler()));
+            }
+        }
+
+        /**
+         * Drops the ready ViewHolders and the results of the pending inflations.
+         */
+        void clear() {
+            mReadyViewHolders.clear();
+            mPendingCount = 0;
+            mGeneration++;
+        }
+
+        /**
+         * Accounts for a finished inflation of the given generation.
+         *
+         * @param generation
+         * @param holder the inflated ViewHolder, or null if inflating it failed
+         */
+        void onInflated(int generation, RecyclerView.ViewHolder holder) {
+            if (generation != mGeneration) {
+                return;
+            }
+            mPendingCount--;
+            if (holder != null && mAsyncInflations.get(mItemViewType) == this
+                    && mReadyViewHolders.size() < mCount) {
+                mReadyViewHolders.add(holder);
+            }
+        }
+
+        /**
+         * Stops inflating this view type ahead of demand after an inflation of the given
+         * generation failed, so that it is created on the main thread from then on.
+         *
+         * @param generation
+         */
+        void onInflationFailed(int generation) {
+            if (generation == mGeneration && mAsyncInflations.get(mItemViewType) == this) {
+                mCount = 0;
+                clear();
+                mAsyncInflations.remove(mItemViewType);
+            }
+        }
+    }
+
+    /**
+     * Creates one ViewHolder on the inflation executor and hands it to the main thread. A
+     * failure while creating it is logged on the main thread and its view type is no longer
+     * inflated ahead of demand; onCreateViewHolder creates it synchronously instead.
+     */
+    private class Inflation implements Runnable {
+
+        final AsyncInflation mAsyncInflation;
+        final int            mGeneration;
+        final ViewGroup      mParent;
+        final LayoutInflater mInflater;
+        final Handler        mHandler;
+
+        Inflation(AsyncInflation asyncInflation, int generation, ViewGroup parent,
+                  LayoutInflater inflater, Handler handler) {
+            mAsyncInflation = asyncInflation;
+            mGeneration = generation;
+            mParent = parent;
+            mInflater = inflater;
+            mHandler = handler;
+        }
+
+        @Override
+        public void run() {
+            if (mAsyncInflation.mGeneration != mGeneration) {
+                return;
+            }
+            RecyclerView.ViewHolder holder = null;
+            Throwable failure = null;
+            try {
+                // the inflater is shared by every inflation of the adapter, and a custom
+                // executor may run several of them at once
+                synchronized (mInflater) {
+                    holder = createAsyncViewHolder(mParent, mAsyncInflation.mItemViewType,
+                                                   mInflater);
+                }
+            } catch (RuntimeException e) {
+                failure = e;
+            } catch (Error e) {
+                failure = e;
+            }
+            final RecyclerView.ViewHolder inflatedHolder = holder;
+            final Throwable inflationFailure = failure;
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mAsyncInflation.onInflated(mGeneration, inflatedHolder);
+                    if (inflationFailure != null) {
+                        Log.e(TAG, "Failed to create a ViewHolder of view type "
+                                + getUserViewType(mAsyncInflation.mItemViewType)
+                                + " ahead of demand", inflationFailure);
+                        mAsyncInflation.onInflationFailed(mGeneration);
                     }
                 }
+            });
+        }
+    }
+
+    /**
+     * Creates missing child ViewHolders whenever the main thread is idle, for at most
+     * {@link #WARM_UP_BUDGET_NANOS} per idle pass, until the pool holds the warm-up count of every
+     * type. At most the sum of the warm-up counts is created per warm-up, even if the pool drops
+     * some of them.
+     * <p/>
+     * The MessageQueue only runs idle handlers again after it handled another message, so a no-op
+     * message is posted after each pass that leaves work undone.
+     */
+    private class ViewHolderWarmUp implements MessageQueue.IdleHandler, Runnable {
+
+        private final List<RecyclerView.ViewHolder> mHolders = new ArrayList<>();
+        private int                                 mRemainingCount;
+
+        ViewHolderWarmUp() {
+            for (int count : mChildWarmUpCounts.values()) {
+                mRemainingCount += count;
             }
-            i++;
         }
-        notifyDataSetChanged();
+
+        @Override
+        public boolean queueIdle() {
+            RecyclerView recyclerView = mRecyclerView;
+            if (mViewHolderWarmUp != this || recyclerView == null) {
+                return false;
+            }
+            long deadlineNanos = System.nanoTime() + WARM_UP_BUDGET_NANOS;
+            while (mRemainingCount > 0 && createMissingViewHolder(recyclerView)) {
+                mRemainingCount--;
+                if (System.nanoTime() >= deadlineNanos) {
+                    getMainHandler().post(this);
+                    return true;
+                }
+            }
+            mViewHolderWarmUp = null;
+            return false;
+        }
+
+        /**
+         * @param recyclerView
+         * @return false if the pool already holds the warm-up count of every type
+         */
+        private boolean createMissingViewHolder(RecyclerView recyclerView) {
+            RecyclerView.RecycledViewPool recycledViewPool = recyclerView.getRecycledViewPool();
+            for (Map.Entry<Integer, Integer> entry : mChildWarmUpCounts.entrySet()) {
+                int itemViewType = mViewTypeNamespace | entry.getKey();
+                if (countRecycledViews(recycledViewPool, itemViewType, mHolders) < entry.getValue()) {
+                    recycledViewPool.putRecycledView(createViewHolder(recyclerView, itemViewType));
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * The no-op message that lets the next idle pass run.
+         */
+        @Override
+        public void run() { }
     }
 }
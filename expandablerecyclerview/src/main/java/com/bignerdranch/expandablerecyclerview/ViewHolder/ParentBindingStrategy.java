@@ -0,0 +1,97 @@
+package com.bignerdranch.expandablerecyclerview.ViewHolder;
+
+/**
+ * Immutable set of clickable view and animation settings for ParentViewHolders, compiled once
+ * whenever the adapter's settings change.
+ * <p/>
+ * Applying a strategy to a holder it was already applied to does nothing, so it can be applied
+ * on every bind. The instance itself identifies a version of the settings, which lets the adapter
+ * pass it as a change payload to update existing holders.
+ */
+public final class ParentBindingStrategy {
+
+    private static final int CLICK_MODE_ITEM = 0;
+    private static final int CLICK_MODE_VIEW = 1;
+    private static final int CLICK_MODE_VIEW_AND_ITEM = 2;
+
+    private final int  mClickMode;
+    private final int  mClickableViewId;
+    private final long mAnimationDuration;
+
+    private ParentBindingStrategy(int clickMode, int clickableViewId, long animationDuration) {
+        mClickMode = clickMode;
+        mClickableViewId = clickableViewId;
+        mAnimationDuration = animationDuration;
+    }
+
+    /**
+     * @return a strategy where clicking the whole parent item triggers expansion, with no
+     * rotation animation
+     */
+    public static ParentBindingStrategy forItemClick() {
+        return new ParentBindingStrategy(CLICK_MODE_ITEM, 0, -1);
+    }
+
+    /**
+     * @param clickableViewId   the id of the view that triggers expansion
+     * @param itemClickable     true if clicking the rest of the parent item triggers it as well
+     * @param animationDuration the rotation duration in MS, or a negative value for no rotation
+     * @return a strategy where a custom clickable view triggers expansion
+     */
+    public static ParentBindingStrategy forClickableView(int clickableViewId, boolean itemClickable,
+                                                         long animationDuration) {
+        return new ParentBindingStrategy(itemClickable ? CLICK_MODE_VIEW_AND_ITEM : CLICK_MODE_VIEW,
+                                         clickableViewId, animationDuration);
+    }
+
+    /**
+     * Applies the settings to the holder, unless this strategy was the last one applied to it.
+     *
+     * @param parentViewHolder
+     */
+    public void apply(ParentViewHolder parentViewHolder) {
+        if (parentViewHolder.mBindingStrategy == this) {
+            return;
+        }
+        parentViewHolder.mBindingStrategy = this;
+
+        if (mClickMode == CLICK_MODE_ITEM) {
+            parentViewHolder.setMainItemClickToExpand();
+            return;
+        }
+        if (mClickMode == CLICK_MODE_VIEW_AND_ITEM) {
+            parentViewHolder.setCustomClickableViewAndItem(mClickableViewId);
+        } else {
+            parentViewHolder.setCustomClickableViewOnly(mClickableViewId);
+        }
+        if (mAnimationDuration >= 0) {
+            parentViewHolder.setAnimationDuration(mAnimationDuration);
+        } else {
+            parentViewHolder.cancelAnimation();
+        }
+    }
+
+    /**
+     * Strategies are equal if they apply the same settings.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ParentBindingStrategy)) {
+            return false;
+        }
+        ParentBindingStrategy other = (ParentBindingStrategy) o;
+        return mClickMode == other.mClickMode
+                && mClickableViewId == other.mClickableViewId
+                && mAnimationDuration == other.mAnimationDuration;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mClickMode;
+        result = 31 * result + mClickableViewId;
+        return 31 * result + (int) (mAnimationDuration ^ (mAnimationDuration >>> 32));
+    }
+}
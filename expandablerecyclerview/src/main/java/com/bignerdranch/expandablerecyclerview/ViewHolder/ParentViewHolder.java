@@ -1,5 +1,7 @@
 package com.bignerdranch.expandablerecyclerview.ViewHolder;
 
+import android.animation.ValueAnimator;
+import android.annotation.TargetApi;
 import android.os.Build;
 import android.support.v7.widget.RecyclerView;
 import android.view.View;
@@ -25,12 +27,23 @@ public class ParentViewHolder extends RecyclerView.ViewHolder implements View.On
     private static final long DEFAULT_ROTATE_DURATION_MS = 200;
     private static final boolean HONEYCOMB_AND_ABOVE = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB;
 
+    private static final int CLICK_MODE_NOT_SET = 0;
+    private static final int CLICK_MODE_ITEM = 1;
+    private static final int CLICK_MODE_VIEW = 2;
+    private static final int CLICK_MODE_VIEW_AND_ITEM = 3;
+
     private ParentItemClickListener mParentItemClickListener;
     private View mClickableView;
+    private int mClickableViewId;
+    private int mClickMode = CLICK_MODE_NOT_SET;
+    ParentBindingStrategy mBindingStrategy;
     private boolean mRotationEnabled;
     private boolean mIsExpanded;
     private long mDuration;
     private float mRotation;
+    private IndicatorAnimator mIndicatorAnimator;
+    private RotateAnimation mExpandAnimation;
+    private RotateAnimation mCollapseAnimation;
 
     /**
      * Public constructor that takes in an ItemView along with an implementation of
@@ -50,13 +63,19 @@ public class ParentViewHolder extends RecyclerView.ViewHolder implements View.On
      * Setter for a custom Clickable view rather than the Parent item. By calling this method, the
      * Parent item is no longer responsible for triggering the expansion. The user should pass in
      * the id of the view that they wish to be the expansion trigger.
+     * <p/>
+     * The view is only looked up and the click listeners are only registered if the clickable
+     * view or mode changed since the last call.
      *
      * @param clickableViewId
      */
     public void setCustomClickableViewOnly(int clickableViewId) {
-        mClickableView = itemView.findViewById(clickableViewId);
-        itemView.setOnClickListener(null);
-        mClickableView.setOnClickListener(this);
+        if (mClickMode != CLICK_MODE_VIEW || mClickableViewId != clickableViewId) {
+            findClickableView(clickableViewId);
+            itemView.setOnClickListener(null);
+            mClickableView.setOnClickListener(this);
+            mClickMode = CLICK_MODE_VIEW;
+        }
         if (HONEYCOMB_AND_ABOVE && mRotationEnabled) {
             mClickableView.setRotation(mRotation);
         }
@@ -67,13 +86,19 @@ public class ParentViewHolder extends RecyclerView.ViewHolder implements View.On
      * Parent item and the clickable view are responsible for triggering the expansion. This means
      * that either can be clicked and an expansion will occur. The user should pass in an id of the
      * view they wish to set as the clickable expansion button.
+     * <p/>
+     * The view is only looked up and the click listeners are only registered if the clickable
+     * view or mode changed since the last call.
      *
      * @param clickableViewId
      */
     public void setCustomClickableViewAndItem(int clickableViewId) {
-        mClickableView = itemView.findViewById(clickableViewId);
-        itemView.setOnClickListener(this);
-        mClickableView.setOnClickListener(this);
+        if (mClickMode != CLICK_MODE_VIEW_AND_ITEM || mClickableViewId != clickableViewId) {
+            findClickableView(clickableViewId);
+            itemView.setOnClickListener(this);
+            mClickableView.setOnClickListener(this);
+            mClickMode = CLICK_MODE_VIEW_AND_ITEM;
+        }
         if (HONEYCOMB_AND_ABOVE && mRotationEnabled) {
             mClickableView.setRotation(mRotation);
         }
@@ -97,6 +122,9 @@ public class ParentViewHolder extends RecyclerView.ViewHolder implements View.On
      */
     public void cancelAnimation() {
         mRotationEnabled = false;
+        if (mIndicatorAnimator != null) {
+            mIndicatorAnimator.cancel();
+        }
         if (HONEYCOMB_AND_ABOVE && mRotationEnabled) {
             mClickableView.setRotation(mRotation);
         }
@@ -107,11 +135,31 @@ public class ParentViewHolder extends RecyclerView.ViewHolder implements View.On
      * clickable view.
      */
     public void setMainItemClickToExpand() {
+        if (mClickMode != CLICK_MODE_ITEM) {
+            if (mClickableView != null) {
+                mClickableView.setOnClickListener(null);
+            }
+            itemView.setOnClickListener(this);
+            mClickMode = CLICK_MODE_ITEM;
+        }
+        mRotationEnabled = false;
+    }
+
+    /**
+     * Looks up the custom clickable view, clearing the click listener of the previous one if the
+     * id changed.
+     *
+     * @param clickableViewId
+     */
+    private void findClickableView(int clickableViewId) {
+        if (mClickableView != null && mClickableViewId == clickableViewId) {
+            return;
+        }
         if (mClickableView != null) {
             mClickableView.setOnClickListener(null);
         }
-        itemView.setOnClickListener(this);
-        mRotationEnabled = false;
+        mClickableView = itemView.findViewById(clickableViewId);
+        mClickableViewId = clickableViewId;
     }
 
     /**
@@ -124,18 +172,21 @@ public class ParentViewHolder extends RecyclerView.ViewHolder implements View.On
     }
 
     /**
-     * Setter method for the item to be expanded or not. Also triggers the animation of the custom
-     * clickable view if it and the rotation duration are both defined.
+     * Setter method for the item to be expanded or not. Also sets the rotation of the custom
+     * clickable view if it and the rotation duration are both defined. A rotation animation that
+     * is already running towards the new state is left to finish; any other is cancelled.
      *
      * @param isExpanded
      */
     public void setExpanded(boolean isExpanded) {
         mIsExpanded = isExpanded;
-        if (mRotationEnabled) {
-            if (mIsExpanded && mClickableView != null && HONEYCOMB_AND_ABOVE) {
-                mClickableView.setRotation(ROTATED_POSITION);
-            } else if (mClickableView != null && HONEYCOMB_AND_ABOVE) {
-                mClickableView.setRotation(INITIAL_POSITION);
+        if (mRotationEnabled && mClickableView != null && HONEYCOMB_AND_ABOVE) {
+            float rotation = isExpanded ? ROTATED_POSITION : INITIAL_POSITION;
+            if (mIndicatorAnimator == null || !mIndicatorAnimator.isRunningTo(mClickableView, rotation)) {
+                if (mIndicatorAnimator != null) {
+                    mIndicatorAnimator.cancel();
+                }
+                mClickableView.setRotation(rotation);
             }
         }
     }
@@ -184,20 +235,94 @@ public class ParentViewHolder extends RecyclerView.ViewHolder implements View.On
     @Override
     public void onClick(View v) {
         if (mParentItemClickListener != null) {
-            if (mClickableView != null) {
-                if (mRotationEnabled) {
-                    RotateAnimation rotateAnimation = new RotateAnimation(ROTATED_POSITION,
-                            INITIAL_POSITION,
-                            RotateAnimation.RELATIVE_TO_SELF, PIVOT_VALUE,
-                            RotateAnimation.RELATIVE_TO_SELF, PIVOT_VALUE);
-                    mRotation = INITIAL_POSITION;
-                    rotateAnimation.setDuration(mDuration);
-                    rotateAnimation.setFillAfter(true);
-                    mClickableView.startAnimation(rotateAnimation);
-                }
+            if (mClickableView != null && mRotationEnabled) {
+                animateIndicator(!mIsExpanded);
             }
             setExpanded(!mIsExpanded);
             mParentItemClickListener.onParentItemClickListener(getLayoutPosition());
         }
     }
+
+    /**
+     * Rotates the custom clickable view towards the given state. On Honeycomb and above, the
+     * view's rotation property is animated from its current value by an animator reused for the
+     * lifetime of this ViewHolder, so reversing in flight allocates nothing. On older versions,
+     * one of two reused view animations is started.
+     *
+     * @param isExpanded
+     */
+    private void animateIndicator(boolean isExpanded) {
+        mRotation = isExpanded ? ROTATED_POSITION : INITIAL_POSITION;
+        if (HONEYCOMB_AND_ABOVE) {
+            if (mIndicatorAnimator == null) {
+                mIndicatorAnimator = new IndicatorAnimator();
+            }
+            mIndicatorAnimator.start(mClickableView, mRotation, mDuration);
+            return;
+        }
+
+        RotateAnimation rotateAnimation;
+        if (isExpanded) {
+            if (mExpandAnimation == null) {
+                mExpandAnimation = createRotateAnimation(INITIAL_POSITION, ROTATED_POSITION);
+            }
+            rotateAnimation = mExpandAnimation;
+        } else {
+            if (mCollapseAnimation == null) {
+                mCollapseAnimation = createRotateAnimation(ROTATED_POSITION, INITIAL_POSITION);
+            }
+            rotateAnimation = mCollapseAnimation;
+        }
+        rotateAnimation.setDuration(mDuration);
+        mClickableView.startAnimation(rotateAnimation);
+    }
+
+    private static RotateAnimation createRotateAnimation(float fromDegrees, float toDegrees) {
+        RotateAnimation rotateAnimation = new RotateAnimation(fromDegrees, toDegrees,
+                RotateAnimation.RELATIVE_TO_SELF, PIVOT_VALUE,
+                RotateAnimation.RELATIVE_TO_SELF, PIVOT_VALUE);
+        rotateAnimation.setFillAfter(true);
+        return rotateAnimation;
+    }
+
+    /**
+     * Animates the rotation property of a view between two values with a single ValueAnimator.
+     * Only loaded on Honeycomb and above.
+     */
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static class IndicatorAnimator implements ValueAnimator.AnimatorUpdateListener {
+
+        private final ValueAnimator mAnimator;
+        private View                mView;
+        private float               mFromRotation;
+        private float               mToRotation;
+
+        IndicatorAnimator() {
+            mAnimator = ValueAnimator.ofFloat(0f, 1f);
+            mAnimator.addUpdateListener(this);
+        }
+
+        void start(View view, float toRotation, long duration) {
+            mAnimator.cancel();
+            mView = view;
+            mFromRotation = view.getRotation();
+            mToRotation = toRotation;
+            mAnimator.setDuration(duration);
+            mAnimator.start();
+        }
+
+        boolean isRunningTo(View view, float rotation) {
+            return mAnimator.isRunning() && mView == view && mToRotation == rotation;
+        }
+
+        void cancel() {
+            mAnimator.cancel();
+        }
+
+        @Override
+        public void onAnimationUpdate(ValueAnimator animation) {
+            float fraction = animation.getAnimatedFraction();
+            mView.setRotation(mFromRotation + (mToRotation - mFromRotation) * fraction);
+        }
+    }
 }